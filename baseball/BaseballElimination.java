@@ -5,11 +5,14 @@
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.Bag;
-import edu.princeton.cs.algs4.FlowEdge;
-import edu.princeton.cs.algs4.FlowNetwork;
-import edu.princeton.cs.algs4.FordFulkerson;
 import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.ST;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class BaseballElimination {
     private int[] w;
@@ -19,6 +22,19 @@ public class BaseballElimination {
     private String[] numToName;
     private ST<String, Integer> nameToNum;
 
+    // share[i][j] is how many of the g[i][j] games left between i and j
+    // the latest max flow had i win. It is a feasible start for the next
+    // flow, so after a game only a few augmenting paths are needed.
+    private int[][] share;
+
+    // Each team's certificate, null if not eliminated, as solved when the
+    // standings were at version solvedAt[team]. version goes up with
+    // every change to the standings, which makes all results stale at
+    // once without clearing them.
+    private Bag<String>[] certificates;
+    private int[] solvedAt;
+    private int version;
+
     // create a baseball division from given filename in format specified below
     public BaseballElimination(String filename) {
         In file = new In(filename);
@@ -40,7 +56,118 @@ public class BaseballElimination {
             r[i] = file.readInt();
             for (int j = 0; j < numTeams; j++) g[i][j] = file.readInt();
         }
+        share = new int[numTeams][numTeams];
+        certificates = newCertificates(numTeams);
+        solvedAt = new int[numTeams];
+        Arrays.fill(solvedAt, -1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Bag<String>[] newCertificates(int numTeams) {
+        return (Bag<String>[]) new Bag[numTeams];
+    }
+
+    // Records that winner beat loser in one of their remaining games.
+    // The winner's own network is unchanged (its wins and remaining games
+    // still add up to the same total, and the game was its own), so its
+    // result is kept; every other team is solved again when next asked
+    // about, starting from the previous flows, so that results depend
+    // only on the standings and not on the order games were recorded.
+    public void recordGame(String winner, String loser) {
+        if (!nameToNum.contains(winner) || !nameToNum.contains(loser)) {
+            throw new IllegalArgumentException();
+        }
+        int a = nameToNum.get(winner);
+        int b = nameToNum.get(loser);
+        if (a == b || g[a][b] == 0) throw new IllegalArgumentException();
+        w[a]++;
+        l[b]++;
+        r[a]--;
+        r[b]--;
+        g[a][b]--;
+        g[b][a]--;
+        if (share[a][b] + share[b][a] > g[a][b]) {
+            if (share[a][b] > 0) share[a][b]--;
+            else share[b][a]--;
+        }
+
+        version++;
+        if (solvedAt[a] == version - 1) solvedAt[a] = version;
+    }
+
+    // The certificate of teamNum (null if not eliminated) for the current
+    // standings, solving the team at most once per version.
+    private Bag<String> result(int teamNum) {
+        if (solvedAt[teamNum] != version) {
+            certificates[teamNum] = playSeason(teamNum);
+            solvedAt[teamNum] = version;
+        }
+        return certificates[teamNum];
+    }
+
+    // all eliminated teams, in the order of teams()
+    public Iterable<String> eliminatedTeams() {
+        Queue<String> eliminated = new Queue<String>();
+        if (numberOfTeams() == 1) return eliminated;
+        for (String team : teams()) {
+            if (result(nameToNum.get(team)) != null) eliminated.enqueue(team);
+        }
+        return eliminated;
+    }
+
+    // Same as above, solving the teams' max flows concurrently on pool.
+    // Teams that cannot catch the leader in wins are settled first,
+    // without a flow; the division must not be used from other threads
+    // meanwhile.
+    public Iterable<String> eliminatedTeams(ForkJoinPool pool) {
+        if (pool == null) throw new IllegalArgumentException();
+        int numTeams = numberOfTeams();
+        if (numTeams > 1) {
+            int maxWins = 0;
+            for (int i = 0; i < numTeams; i++) maxWins = Math.max(maxWins, w[i]);
+            int[] pending = new int[numTeams];
+            int n = 0;
+            for (int i = 0; i < numTeams; i++) {
+                if (solvedAt[i] == version) continue;
+                if (w[i] + r[i] < maxWins) result(i);
+                else pending[n++] = i;
+            }
+            pool.invoke(new Solve(this, pending, 0, n));
+        }
+        return eliminatedTeams();
+    }
+
+    // Solves pending[lo..hi) of division, splitting down to one team per
+    // task. Each task writes only its own teams' slots of certificates
+    // and solvedAt, and the warm start is read but not updated, so tasks
+    // share nothing they write.
+    private static class Solve extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BaseballElimination division;
+        private final int[] pending;
+        private final int lo;
+        private final int hi;
+
+        Solve(BaseballElimination division, int[] pending, int lo, int hi) {
+            this.division = division;
+            this.pending = pending;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
+        protected void compute() {
+            if (hi - lo == 1) {
+                int teamNum = pending[lo];
+                division.certificates[teamNum] = division.playSeason(teamNum, false);
+                division.solvedAt[teamNum] = division.version;
+            }
+            else if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Solve(division, pending, lo, mid),
+                          new Solve(division, pending, mid, hi));
+            }
+        }
     }
 
     // number of teams
@@ -93,7 +220,7 @@ public class BaseballElimination {
         if (numberOfTeams() == 1) return false;
         if (nameToNum.contains(team)) {
             int teamNum = nameToNum.get(team);
-            if (playSeason(teamNum) == null) return false;
+            if (result(teamNum) == null) return false;
             else return true;
         }
         else throw new IllegalArgumentException();
@@ -104,7 +231,7 @@ public class BaseballElimination {
         if (numberOfTeams() == 1) return null;
         if (nameToNum.contains(team)) {
             int teamNum = nameToNum.get(team);
-            Bag<String> cert = playSeason(teamNum);
+            Bag<String> cert = result(teamNum);
             if (cert == null) return null;
             else return cert;
         }
@@ -113,6 +240,11 @@ public class BaseballElimination {
 
 
     private Bag<String> playSeason(int teamNum) {
+        return playSeason(teamNum, true);
+    }
+
+    // If keepFlow, the max flow found becomes the next warm start.
+    private Bag<String> playSeason(int teamNum, boolean keepFlow) {
         // Check for simple elimination
         int numTeams = numberOfTeams();
         for (int i = 0; i < numTeams; i++) {
@@ -123,24 +255,45 @@ public class BaseballElimination {
             }
         }
 
-        double inf = Double.POSITIVE_INFINITY;
-        int n = 1 + numberOfTeams() + bin(numTeams - 1, 2);
-        FlowNetwork season = new FlowNetwork(n);
+        // One game vertex per pair of other teams with games left between
+        // them; a pair with none would only add an edge of capacity 0.
+        int numGames = 0;
+        for (int i = 0; i < numTeams; i++) {
+            for (int j = i + 1; j < numTeams; j++) {
+                if (i != teamNum && j != teamNum && g[i][j] > 0) numGames++;
+            }
+        }
+        int n = 1 + numTeams + numGames;
+        MaxFlow season = new MaxFlow(n, 3 * numGames + numTeams - 1);
         int totalGames = 0;
 
-        // Connect source to game node.
+        // Room left on each team's edge to the sink, as the warm start
+        // is laid down.
+        int[] room = new int[numTeams];
+        for (int i = 0; i < numTeams; i++) room[i] = w[teamNum] + r[teamNum] - w[i];
+        int[] toTeam = new int[2 * numGames];
+
+        // Connect source to game node, starting each game's edges with
+        // as much of the previous share as the teams' room allows.
         int count = 1;
         for (int i = 0; i < numTeams; i++) {
             if (i != teamNum) {
                 for (int j = i + 1; j < numTeams; j++) {
-                    if (j != teamNum) {
+                    if (j != teamNum && g[i][j] > 0) {
                         totalGames += g[i][j];
-                        FlowEdge fromSrc = new FlowEdge(numTeams, numTeams + count, g[i][j]);
-                        FlowEdge toTeami = new FlowEdge(numTeams + count, i, inf);
-                        FlowEdge toTeamj = new FlowEdge(numTeams + count, j, inf);
-                        season.addEdge(fromSrc);
-                        season.addEdge(toTeami);
-                        season.addEdge(toTeamj);
+                        int game = numTeams + count;
+                        int fromSrc = season.addEdge(numTeams, game, g[i][j]);
+                        int toTeami = season.addEdge(game, i, MaxFlow.INFINITY);
+                        int toTeamj = season.addEdge(game, j, MaxFlow.INFINITY);
+                        int wonByI = Math.min(share[i][j], room[i]);
+                        int wonByJ = Math.min(share[j][i], room[j]);
+                        room[i] -= wonByI;
+                        room[j] -= wonByJ;
+                        season.addFlow(fromSrc, wonByI + wonByJ);
+                        season.addFlow(toTeami, wonByI);
+                        season.addFlow(toTeamj, wonByJ);
+                        toTeam[2 * (count - 1)] = toTeami;
+                        toTeam[2 * (count - 1) + 1] = toTeamj;
                         count++;
                     }
                 }
@@ -151,17 +304,24 @@ public class BaseballElimination {
         // Connect team nodes to sink.
         for (int i = 0; i < numTeams; i++) {
             if (i != teamNum) {
-                FlowEdge toSink = new FlowEdge(i, teamNum, w[teamNum] + r[teamNum] - w[i]);
-                season.addEdge(toSink);
+                int capacity = w[teamNum] + r[teamNum] - w[i];
+                int toSink = season.addEdge(i, teamNum, capacity);
+                season.addFlow(toSink, capacity - room[i]);
             }
         }
 
         // Compute the maxflow for season, find cert of elimination.
-        FordFulkerson seasonFlow = new FordFulkerson(season, numTeams, teamNum);
-        if (seasonFlow.value() < totalGames) {
+        int value = season.maxFlow(numTeams, teamNum);
+        for (int e = 0; keepFlow && e < toTeam.length; e += 2) {
+            int i = season.to(toTeam[e]);
+            int j = season.to(toTeam[e + 1]);
+            share[i][j] = season.flow(toTeam[e]);
+            share[j][i] = season.flow(toTeam[e + 1]);
+        }
+        if (value < totalGames) {
             Bag<String> cert = new Bag<String>();
             for (int i = 0; i < numTeams; i++) {
-                if (i != teamNum && seasonFlow.inCut(i)) {
+                if (i != teamNum && season.inCut(i)) {
                     cert.add((numToName[i]));
                 }
             }
@@ -172,15 +332,6 @@ public class BaseballElimination {
         return null;
     }
 
-    private int bin(int n, int k) {
-        // Base Cases
-        if (k == 0 || k == n)
-            return 1;
-
-        // Recursive call
-        return bin(n - 1, k - 1) + bin(n - 1, k);
-    }
-
     public static void main(String[] args) {
         BaseballElimination division = new BaseballElimination(args[0]);
         for (String team : division.teams()) {
@@ -0,0 +1,177 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Dinic's max-flow algorithm on int capacities.
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+// A flow network on vertices 0..V-1 with int capacities, stored in flat
+// arrays instead of an object per edge. Edge e and its residual twin
+// e ^ 1 are added together; cap[] holds residual capacities, so the flow
+// on edge e is the residual capacity of its twin. maxFlow() runs Dinic's
+// algorithm from whatever flow the edges already carry.
+public class MaxFlow {
+    // capacity that no flow in the network can reach
+    public static final int INFINITY = Integer.MAX_VALUE;
+
+    private final int numVertices;
+    private int numEdges;
+    // first edge out of each vertex, -1 if none; next[e] is the edge out
+    // of the same vertex after e
+    private final int[] head;
+    private int[] next;
+    private int[] to;
+    private int[] cap;
+
+    // BFS levels of the last phase, -1 where unreached; after maxFlow()
+    // the reached vertices are the source side of a minimum cut.
+    private final int[] level;
+    private final int[] queue;
+    // edge to try next out of each vertex in the current phase
+    private final int[] current;
+
+    // an empty network on V vertices, with room for about E edges
+    public MaxFlow(int V, int E) {
+        if (V < 0 || E < 0) throw new IllegalArgumentException();
+        numVertices = V;
+        head = new int[V];
+        Arrays.fill(head, -1);
+        next = new int[2 * E];
+        to = new int[2 * E];
+        cap = new int[2 * E];
+        level = new int[V];
+        queue = new int[V];
+        current = new int[V];
+    }
+
+    public int V() {
+        return numVertices;
+    }
+
+    // Adds an edge from v to w and returns its id for flow() and addFlow().
+    public int addEdge(int v, int w, int capacity) {
+        if (v < 0 || v >= numVertices || w < 0 || w >= numVertices || capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (numEdges + 2 > to.length) {
+            int size = Math.max(4, 2 * to.length);
+            next = Arrays.copyOf(next, size);
+            to = Arrays.copyOf(to, size);
+            cap = Arrays.copyOf(cap, size);
+        }
+        int e = numEdges;
+        to[e] = w;
+        cap[e] = capacity;
+        next[e] = head[v];
+        head[v] = e;
+        to[e + 1] = v;
+        cap[e + 1] = 0;
+        next[e + 1] = head[w];
+        head[w] = e + 1;
+        numEdges += 2;
+        return e;
+    }
+
+    // tail of edge e
+    public int from(int e) {
+        return to[e ^ 1];
+    }
+
+    // head of edge e
+    public int to(int e) {
+        return to[e];
+    }
+
+    // flow on edge e
+    public int flow(int e) {
+        return cap[e ^ 1];
+    }
+
+    // Adds delta to the flow on edge e, for starting from a known flow;
+    // the caller keeps flow conserved at every vertex but the source and
+    // sink.
+    public void addFlow(int e, int delta) {
+        if (delta < 0 || delta > cap[e]) throw new IllegalArgumentException();
+        cap[e] -= delta;
+        cap[e ^ 1] += delta;
+    }
+
+    // Augments the current flow to a maximum flow from s to t and returns
+    // its value.
+    public int maxFlow(int s, int t) {
+        if (s == t) throw new IllegalArgumentException();
+        int value = 0;
+        for (int e = head[t]; e != -1; e = next[e]) {
+            // odd edges out of t are twins of edges into it
+            if ((e & 1) == 1) value += cap[e];
+            else value -= cap[e ^ 1];
+        }
+        while (levels(s, t)) {
+            System.arraycopy(head, 0, current, 0, numVertices);
+            int pushed;
+            while ((pushed = augment(s, t)) > 0) value += pushed;
+        }
+        return value;
+    }
+
+    // is v on the source side of the minimum cut found by maxFlow()?
+    public boolean inCut(int v) {
+        if (v < 0 || v >= numVertices) throw new IllegalArgumentException();
+        return level[v] >= 0;
+    }
+
+    // BFS over edges with residual capacity; true if t is reached.
+    private boolean levels(int s, int t) {
+        Arrays.fill(level, -1);
+        level[s] = 0;
+        queue[0] = s;
+        int tail = 1;
+        for (int headIndex = 0; headIndex < tail; headIndex++) {
+            int v = queue[headIndex];
+            for (int e = head[v]; e != -1; e = next[e]) {
+                if (cap[e] > 0 && level[to[e]] < 0) {
+                    level[to[e]] = level[v] + 1;
+                    queue[tail++] = to[e];
+                }
+            }
+        }
+        return level[t] >= 0;
+    }
+
+    // Finds one path from s to t along the level graph, skipping edges
+    // that led to dead ends earlier in the phase, and pushes as much as
+    // it can along it; 0 once the phase's flow is blocking. Iterative,
+    // with the path's edges kept in queue[], so deep paths cannot
+    // overflow the stack.
+    private int augment(int s, int t) {
+        int depth = 0;
+        int v = s;
+        while (true) {
+            if (v == t) {
+                int pushed = INFINITY;
+                for (int i = 0; i < depth; i++) pushed = Math.min(pushed, cap[queue[i]]);
+                for (int i = 0; i < depth; i++) {
+                    cap[queue[i]] -= pushed;
+                    cap[queue[i] ^ 1] += pushed;
+                }
+                return pushed;
+            }
+            int e = current[v];
+            while (e != -1 && (cap[e] == 0 || level[to[e]] != level[v] + 1)) e = next[e];
+            current[v] = e;
+            if (e != -1) {
+                queue[depth++] = e;
+                v = to[e];
+            }
+            else {
+                // dead end: retreat and stop trying the edge that led here
+                if (depth == 0) return 0;
+                level[v] = -2;
+                int back = queue[--depth];
+                v = to[back ^ 1];
+                current[v] = next[current[v]];
+            }
+        }
+    }
+}
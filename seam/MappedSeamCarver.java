@@ -0,0 +1,471 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Seam carver for pictures too large for the heap.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Picture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Same seams as SeamCarver, but the pixels live in a memory-mapped
+// temporary file and energies are computed on the fly, never stored.
+// The seam DP keeps only two rolling lines of cost on the heap and
+// writes each pixel's parent as 2 bits to a second mapped file. Apart
+// from the seams themselves, heap use is proportional to the width for
+// vertical seams and bounded by TILE_BYTES for horizontal ones.
+public class MappedSeamCarver implements AutoCloseable {
+    // Horizontal seams compute the energies of a tile of whole columns
+    // at a time, as many columns as fit in this many bytes.
+    private static final long TILE_BYTES = 8L << 20;
+
+    private int height;
+    private int width;
+    // Pixel (x, y) is element y * stride + x of pixels.
+    private final int stride;
+    private final MappedInts pixels;
+    // Parent offsets (-1, 0, 1 stored as 0, 1, 2), 4 to a byte, each
+    // line of the DP starting on a new byte.
+    private final MappedBytes edgeTo;
+
+    // create a seam carver object based on the given picture
+    public MappedSeamCarver(Picture picture) {
+        if (picture == null) throw new IllegalArgumentException();
+        width = picture.width();
+        height = picture.height();
+        stride = width;
+        pixels = new MappedInts((long) width * height);
+        try {
+            int[] row = new int[width];
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) row[i] = picture.getRGB(i, j);
+                pixels.write((long) j * stride, row, width);
+            }
+            edgeTo = new MappedBytes(edgeBytes(width, height));
+        }
+        catch (RuntimeException e) {
+            pixels.close();
+            throw e;
+        }
+    }
+
+    // Reads a width-by-height picture stored as big-endian RGB ints,
+    // row by row, in rawFile. The file is copied, never modified.
+    public MappedSeamCarver(String rawFile, int width, int height) {
+        if (rawFile == null || width < 1 || height < 1) throw new IllegalArgumentException();
+        this.width = width;
+        this.height = height;
+        stride = width;
+        pixels = new MappedInts((long) width * height);
+        try {
+            copy(rawFile);
+            edgeTo = new MappedBytes(edgeBytes(width, height));
+        }
+        catch (RuntimeException e) {
+            pixels.close();
+            throw e;
+        }
+    }
+
+    // Copies rawFile, which must hold exactly width * height ints, into
+    // pixels.
+    private void copy(String rawFile) {
+        try (RandomAccessFile in = new RandomAccessFile(rawFile, "r")) {
+            if (in.length() != 4L * width * height) {
+                throw new IllegalArgumentException(rawFile + " is not " + width + "x" + height);
+            }
+            FileChannel channel = in.getChannel();
+            long done = 0;
+            while (done < in.length()) {
+                done += channel.transferTo(done, in.length() - done, pixels.channel);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not read " + rawFile, e);
+        }
+    }
+
+    // The parent store must fit either orientation's DP.
+    private static long edgeBytes(int width, int height) {
+        return Math.max((long) height * ((width + 3) / 4), (long) width * ((height + 3) / 4));
+    }
+
+    // current picture; only for pictures that fit in memory
+    public Picture picture() {
+        Picture newPic = new Picture(width, height);
+        int[] row = new int[width];
+        for (int j = 0; j < height; j++) {
+            pixels.read((long) j * stride, row, width);
+            for (int i = 0; i < width; i++) newPic.setRGB(i, j, row[i]);
+        }
+        return newPic;
+    }
+
+    // Writes the current picture to rawFile in the format read by the
+    // constructor.
+    public void writeTo(String rawFile) {
+        if (rawFile == null) throw new IllegalArgumentException();
+        try (RandomAccessFile out = new RandomAccessFile(rawFile, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer bytes = ByteBuffer.allocateDirect(4 * width);
+            int[] row = new int[width];
+            for (int j = 0; j < height; j++) {
+                pixels.read((long) j * stride, row, width);
+                bytes.clear();
+                bytes.asIntBuffer().put(row, 0, width);
+                while (bytes.hasRemaining()) channel.write(bytes);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + rawFile, e);
+        }
+    }
+
+    // width of current picture
+    public int width() {
+        return width;
+    }
+
+    // height of current picture
+    public int height() {
+        return height;
+    }
+
+    // Energy of pixel at column x and row y.
+    public double energy(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IllegalArgumentException();
+        }
+        if (x == 0 || x == width - 1 || y == 0 || y == height - 1) return 1000;
+        long p = (long) y * stride + x;
+        return Math.sqrt(gradByColor(pixels.get(p - 1), pixels.get(p + 1))
+                                 + gradByColor(pixels.get(p - stride), pixels.get(p + stride)));
+    }
+
+    // sum of the squared differences of the RGB channels of 2 pixels
+    private static int gradByColor(int pixel1, int pixel2) {
+        int r = ((pixel1 >> 16) & 0xFF) - ((pixel2 >> 16) & 0xFF);
+        int g = ((pixel1 >> 8) & 0xFF) - ((pixel2 >> 8) & 0xFF);
+        int b = (pixel1 & 0xFF) - (pixel2 & 0xFF);
+        return r * r + g * g + b * b;
+    }
+
+    // Energies of row j into e, given rows j - 1, j and j + 1 (any of
+    // which may be null at the picture's edge).
+    private void rowEnergy(int[] up, int[] mid, int[] down, int j, double[] e) {
+        for (int i = 0; i < width; i++) {
+            if (i == 0 || i == width - 1 || j == 0 || j == height - 1) e[i] = 1000;
+            else {
+                e[i] = Math.sqrt(gradByColor(mid[i - 1], mid[i + 1])
+                                         + gradByColor(up[i], down[i]));
+            }
+        }
+    }
+
+    // sequence of indices for vertical seam
+    public int[] findVerticalSeam() {
+        int lineBytes = (width + 3) / 4;
+        int[] up = new int[width];
+        int[] mid = new int[width];
+        int[] down = new int[width];
+        double[] e = new double[width];
+        double[] prevCost = new double[width];
+        double[] cost = new double[width];
+        byte[] parents = new byte[lineBytes];
+
+        for (int i = 0; i < width; i++) cost[i] = 1000;
+        pixels.read(0, mid, width);
+        if (height > 1) pixels.read(stride, down, width);
+        for (int j = 1; j < height; j++) {
+            int[] temp = up;
+            up = mid;
+            mid = down;
+            down = temp;
+            if (j + 1 < height) pixels.read((long) (j + 1) * stride, down, width);
+            rowEnergy(up, mid, down, j, e);
+
+            double[] t = prevCost;
+            prevCost = cost;
+            cost = t;
+            Arrays.fill(parents, (byte) 0);
+            for (int i = 0; i < width; i++) {
+                setParent(parents, i, relax(prevCost, i, width, e[i], cost));
+            }
+            edgeTo.write((long) j * lineBytes, parents, lineBytes);
+        }
+        return backtrack(cost, width, height, lineBytes);
+    }
+
+    // sequence of indices for horizontal seam
+    public int[] findHorizontalSeam() {
+        int lineBytes = (height + 3) / 4;
+        int tile = (int) Math.max(1, Math.min(width, TILE_BYTES / (8L * height)));
+        double[] e = new double[tile * height];
+        double[] prevCost = new double[height];
+        double[] cost = new double[height];
+        byte[] parents = new byte[lineBytes];
+        int[] up = new int[tile + 2];
+        int[] mid = new int[tile + 2];
+        int[] down = new int[tile + 2];
+
+        for (int j = 0; j < height; j++) cost[j] = 1000;
+        for (int x0 = 0; x0 < width; x0 += tile) {
+            int x1 = Math.min(width, x0 + tile);
+            tileEnergy(x0, x1, up, mid, down, e);
+            for (int x = Math.max(x0, 1); x < x1; x++) {
+                double[] t = prevCost;
+                prevCost = cost;
+                cost = t;
+                Arrays.fill(parents, (byte) 0);
+                int column = (x - x0) * height;
+                for (int j = 0; j < height; j++) {
+                    setParent(parents, j, relax(prevCost, j, height, e[column + j], cost));
+                }
+                edgeTo.write((long) x * lineBytes, parents, lineBytes);
+            }
+        }
+        return backtrack(cost, height, width, lineBytes);
+    }
+
+    // Energies of columns x0..x1-1 into e, column by column, from one
+    // sweep down the rows reading only the columns x0 - 1 to x1.
+    private void tileEnergy(int x0, int x1, int[] up, int[] mid, int[] down, double[] e) {
+        int from = Math.max(0, x0 - 1);
+        int n = Math.min(width, x1 + 1) - from;
+        pixels.read(from, mid, n);
+        if (height > 1) pixels.read(stride + from, down, n);
+        for (int j = 0; j < height; j++) {
+            if (j > 0) {
+                int[] temp = up;
+                up = mid;
+                mid = down;
+                down = temp;
+                if (j + 1 < height) pixels.read((long) (j + 1) * stride + from, down, n);
+            }
+            for (int x = x0; x < x1; x++) {
+                int k = x - from;
+                double energy;
+                if (x == 0 || x == width - 1 || j == 0 || j == height - 1) energy = 1000;
+                else {
+                    energy = Math.sqrt(gradByColor(mid[k - 1], mid[k + 1])
+                                               + gradByColor(up[k], down[k]));
+                }
+                e[(x - x0) * height + j] = energy;
+            }
+        }
+    }
+
+    // Sets cost[k] to e plus the cheapest of prevCost[k - 1..k + 1],
+    // preferring the lowest position on ties as SeamCarver does, and
+    // returns the offset of that position.
+    private static int relax(double[] prevCost, int k, int span, double e, double[] cost) {
+        double best = Double.POSITIVE_INFINITY;
+        int parent = 0;
+        if (k > 0 && prevCost[k - 1] + e < best) {
+            best = prevCost[k - 1] + e;
+            parent = -1;
+        }
+        if (prevCost[k] + e < best) {
+            best = prevCost[k] + e;
+            parent = 0;
+        }
+        if (k < span - 1 && prevCost[k + 1] + e < best) {
+            best = prevCost[k + 1] + e;
+            parent = 1;
+        }
+        cost[k] = best;
+        return parent;
+    }
+
+    private static void setParent(byte[] parents, int k, int offset) {
+        parents[k >> 2] |= (byte) ((offset + 1) << ((k & 3) << 1));
+    }
+
+    // Follows the stored parents back from the cheapest node on the last
+    // of lines lines of span positions.
+    private int[] backtrack(double[] cost, int span, int lines, int lineBytes) {
+        int min = 0;
+        for (int k = 1; k < span; k++) {
+            if (cost[k] < cost[min]) min = k;
+        }
+        int[] path = new int[lines];
+        path[lines - 1] = min;
+        for (int l = lines - 2; l >= 0; l--) {
+            int k = path[l + 1];
+            int bits = edgeTo.get((long) (l + 1) * lineBytes + (k >> 2)) >> ((k & 3) << 1);
+            path[l] = k + (bits & 3) - 1;
+        }
+        return path;
+    }
+
+    // Checks if a seam is valid.
+    private boolean validSeam(int[] seam, int length, int range) {
+        if (seam == null || seam.length != length) return false;
+        for (int i = 0; i < seam.length; i++) {
+            if (seam[i] < 0 || seam[i] >= range) return false;
+            if (i > 0 && Math.abs(seam[i] - seam[i - 1]) > 1) return false;
+        }
+        return true;
+    }
+
+    // remove vertical seam from current picture
+    public void removeVerticalSeam(int[] seam) {
+        if (!validSeam(seam, height, width) || width <= 1) throw new IllegalArgumentException();
+        int[] row = new int[width];
+        for (int j = 0; j < height; j++) {
+            long start = (long) j * stride;
+            pixels.read(start, row, width);
+            System.arraycopy(row, seam[j] + 1, row, seam[j], width - 1 - seam[j]);
+            pixels.write(start, row, width - 1);
+        }
+        width--;
+    }
+
+    // remove horizontal seam from current picture
+    public void removeHorizontalSeam(int[] seam) {
+        if (!validSeam(seam, width, height) || height <= 1) throw new IllegalArgumentException();
+        int top = height;
+        for (int i = 0; i < width; i++) top = Math.min(top, seam[i]);
+        int[] row = new int[width];
+        int[] below = new int[width];
+        if (top < height - 1) pixels.read((long) top * stride, row, width);
+        for (int j = top; j < height - 1; j++) {
+            pixels.read((long) (j + 1) * stride, below, width);
+            for (int i = 0; i < width; i++) {
+                if (j >= seam[i]) row[i] = below[i];
+            }
+            pixels.write((long) j * stride, row, width);
+            int[] temp = row;
+            row = below;
+            below = temp;
+        }
+        height--;
+    }
+
+    // Releases the temporary files.
+    public void close() {
+        pixels.close();
+        edgeTo.close();
+    }
+
+    // A temporary file mapped in chunks of at most CHUNK bytes, since a
+    // single mapping cannot exceed 2 GB.
+    private static class MappedFile {
+        static final int CHUNK_BITS = 28;
+        static final long CHUNK = 1L << CHUNK_BITS;
+
+        final File file;
+        final FileChannel channel;
+        final MappedByteBuffer[] chunks;
+
+        MappedFile(long bytes) {
+            File temp = null;
+            RandomAccessFile raf = null;
+            try {
+                temp = File.createTempFile("seam", ".map");
+                temp.deleteOnExit();
+                raf = new RandomAccessFile(temp, "rw");
+                raf.setLength(Math.max(bytes, 1));
+                FileChannel opened = raf.getChannel();
+                MappedByteBuffer[] mapped = new MappedByteBuffer[(int) ((bytes + CHUNK - 1) / CHUNK)];
+                for (int c = 0; c < mapped.length; c++) {
+                    long start = c * CHUNK;
+                    mapped[c] = opened.map(FileChannel.MapMode.READ_WRITE, start,
+                                           Math.min(CHUNK, bytes - start));
+                }
+                file = temp;
+                channel = opened;
+                chunks = mapped;
+            }
+            catch (IOException e) {
+                // don't leave the file open or on disk until the JVM exits
+                if (raf != null) {
+                    try {
+                        raf.close();
+                    }
+                    catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                if (temp != null) temp.delete();
+                throw new IllegalStateException("could not create a mapped file", e);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                // the file is deleted below either way
+            }
+            file.delete();
+        }
+    }
+
+    private static class MappedInts extends MappedFile {
+        private static final int PER_CHUNK_BITS = CHUNK_BITS - 2;
+        private static final int PER_CHUNK = 1 << PER_CHUNK_BITS;
+        private final IntBuffer[] ints;
+
+        MappedInts(long n) {
+            super(4 * n);
+            ints = new IntBuffer[chunks.length];
+            for (int c = 0; c < chunks.length; c++) ints[c] = chunks[c].asIntBuffer();
+        }
+
+        int get(long i) {
+            return ints[(int) (i >>> PER_CHUNK_BITS)].get((int) (i & (PER_CHUNK - 1)));
+        }
+
+        // Bulk copies, split only where the range crosses into the next
+        // chunk.
+        void read(long from, int[] dst, int n) {
+            for (int k = 0; k < n; ) {
+                long i = from + k;
+                int offset = (int) (i & (PER_CHUNK - 1));
+                int len = Math.min(n - k, PER_CHUNK - offset);
+                ints[(int) (i >>> PER_CHUNK_BITS)].get(offset, dst, k, len);
+                k += len;
+            }
+        }
+
+        void write(long from, int[] src, int n) {
+            for (int k = 0; k < n; ) {
+                long i = from + k;
+                int offset = (int) (i & (PER_CHUNK - 1));
+                int len = Math.min(n - k, PER_CHUNK - offset);
+                ints[(int) (i >>> PER_CHUNK_BITS)].put(offset, src, k, len);
+                k += len;
+            }
+        }
+    }
+
+    private static class MappedBytes extends MappedFile {
+        MappedBytes(long n) {
+            super(n);
+        }
+
+        int get(long i) {
+            return chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & (CHUNK - 1))) & 0xFF;
+        }
+
+        void write(long from, byte[] src, int n) {
+            for (int k = 0; k < n; ) {
+                long i = from + k;
+                int offset = (int) (i & (CHUNK - 1));
+                int len = (int) Math.min(n - k, CHUNK - offset);
+                chunks[(int) (i >>> CHUNK_BITS)].put(offset, src, k, len);
+                k += len;
+            }
+        }
+    }
+}
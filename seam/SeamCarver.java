@@ -6,12 +6,43 @@
 
 import edu.princeton.cs.algs4.Picture;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
 public class SeamCarver {
-    private boolean inverted = false;
     private int height;
     private int width;
-    private double[][] energy;
-    private int[][] color;
+    // Pixel (x, y) is at index y * stride + x. Rows keep their stride as
+    // seams are removed, so only the first width entries of each of the
+    // first height rows are in use.
+    private int stride;
+    private double[] energy;
+    private int[] color;
+
+    // findSeam() scratch, reused between calls: the DP cost along the
+    // previous and current line, and for each pixel the offset (-1, 0
+    // or 1) of its parent on the previous line.
+    private double[] prevCost;
+    private double[] cost;
+    private byte[] edgeTo;
+
+    // picture() of the current pixels, built on first request and
+    // dropped by every seam removal.
+    private Picture picture;
+
+    // Work is split across cores only for lines of at least PARALLEL_SPAN
+    // pixels or pictures of PARALLEL_PIXELS; below that the overhead
+    // outweighs the gain. A line is split into one chunk per core of the
+    // common pool, but no chunk shorter than MIN_CHUNK pixels.
+    private static final int PARALLEL_SPAN = 4096;
+    private static final int MIN_CHUNK = 1024;
+    private static final long PARALLEL_PIXELS = 1 << 20;
 
     // create a seam carver object based on the given picture
     public SeamCarver(Picture picture) {
@@ -19,185 +50,245 @@ public class SeamCarver {
         picture = new Picture(picture);
         height = picture.height();
         width = picture.width();
-        energy = new double[width][height];
-        color = new int[width][height];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                color[i][j] = picture.getRGB(i, j);
+        stride = width;
+        energy = new double[width * height];
+        color = new int[width * height];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                color[j * stride + i] = picture.getRGB(i, j);
             }
         }
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                energy[i][j] = calcEnergy(i, j);
-            }
+        if ((long) width * height < PARALLEL_PIXELS) {
+            for (int j = 0; j < height; j++) energyRow(j, 0, width);
         }
+        else IntStream.range(0, height).parallel().forEach(j -> energyRow(j, 0, width));
+    }
 
+    // Computes the energies of pixels from..to-1 of row j in one pass.
+    // Border pixels get 1000; the interior loop has no branches and
+    // only integer arithmetic up to the square root.
+    private void energyRow(int j, int from, int to) {
+        int row = j * stride;
+        if (j == 0 || j == height - 1) {
+            for (int i = from; i < to; i++) energy[row + i] = 1000;
+            return;
+        }
+        if (from == 0) energy[row] = 1000;
+        if (to == width && width > 1) energy[row + width - 1] = 1000;
+        int end = Math.min(to, width - 1);
+        for (int p = row + Math.max(from, 1); p < row + end; p++) {
+            energy[p] = Math.sqrt(gradByColor(color[p - 1], color[p + 1])
+                                          + gradByColor(color[p - stride], color[p + stride]));
+        }
     }
 
-    // current picture
+    // Current picture. The same Picture is returned until the next seam
+    // is removed, so callers must copy it before changing it.
     public Picture picture() {
-        if (inverted) invertPic();
-        Picture newPic = new Picture(width, height);
-        for (int i = 0; i < width; i++) {
+        if (picture == null) {
+            Picture newPic = new Picture(width, height);
             for (int j = 0; j < height; j++) {
-                newPic.setRGB(i, j, color[i][j]);
+                for (int i = 0; i < width; i++) {
+                    newPic.setRGB(i, j, color[j * stride + i]);
+                }
             }
+            picture = newPic;
         }
-        return newPic;
+        return picture;
+    }
+
+    // The current pixels as an RGB image that shares this carver's pixel
+    // array instead of copying it. The view is only valid until the next
+    // seam is removed, and writing to it changes the pixels but not
+    // their energies.
+    public BufferedImage image() {
+        int[] masks = { 0xFF0000, 0xFF00, 0xFF };
+        DataBufferInt buffer = new DataBufferInt(color, stride * height);
+        SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(
+                DataBufferInt.TYPE_INT, width, height, stride, masks);
+        WritableRaster raster = Raster.createWritableRaster(model, buffer, null);
+        DirectColorModel colors = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+        return new BufferedImage(colors, raster, false, null);
     }
 
     // width of current picture
     public int width() {
-        if (inverted) return height;
         return width;
     }
 
     // height of current picture
     public int height() {
-        if (inverted) return width;
         return height;
     }
 
-    // Energy of pixel at column x and row y for
-    // original orientation.
+    // Energy of pixel at column x and row y.
     public double energy(int x, int y) {
-        if (inverted) {
-            int temp = x;
-            x = y;
-            y = temp;
-        }
         if (x < 0 || y < 0 || x >= width || y >= height) {
             throw new IllegalArgumentException();
         }
-        return energy[x][y];
+        return energy[y * stride + x];
     }
 
-    //  Calc energy of pixel at column x and row y for
-    // current orientation
+    //  Calc energy of pixel at column x and row y.
     private double calcEnergy(int x, int y) {
         if (x == 0 || x == width - 1 || y == 0 || y == height - 1) return 1000;
-        int cLeft = color[x - 1][y];
-        int cRight = color[x + 1][y];
-        int cUp = color[x][y - 1];
-        int cDown = color[x][y + 1];
-        double yGrad = gradByColor(cUp, cDown);
-        double xGrad = gradByColor(cLeft, cRight);
-        return Math.sqrt(xGrad + yGrad);
+        int p = y * stride + x;
+        int cLeft = color[p - 1];
+        int cRight = color[p + 1];
+        int cUp = color[p - stride];
+        int cDown = color[p + stride];
+        return Math.sqrt(gradByColor(cLeft, cRight) + gradByColor(cUp, cDown));
     }
 
-
     // takes integer representations of 2 pixels RGB values
-    // and computes their gradient.
-    private static double gradByColor(int pixel1, int pixel2) {
-        int grad = 0;
-        // get rad difference and add to grad.
-        int r1 = ((256 * 256 * 256 + pixel1) / 65536);
-        int r2 = ((256 * 256 * 256 + pixel2) / 65536);
-        grad += Math.pow(r1 - r2, 2);
-        // get green difference.
-        int g1 = (((256 * 256 * 256 + pixel1) / 256) % 256);
-        int g2 = (((256 * 256 * 256 + pixel2) / 256) % 256);
-        grad += Math.pow(g1 - g2, 2);
-        // get blue difference.
-        int b1 = ((256 * 256 * 256 + pixel1) % 256);
-        int b2 = ((256 * 256 * 256 + pixel2) % 256);
-        grad += Math.pow(b1 - b2, 2);
-        return grad;
+    // and computes their gradient: the sum of the squared
+    // differences of their red, green and blue channels.
+    private static int gradByColor(int pixel1, int pixel2) {
+        int r = ((pixel1 >> 16) & 0xFF) - ((pixel2 >> 16) & 0xFF);
+        int g = ((pixel1 >> 8) & 0xFF) - ((pixel2 >> 8) & 0xFF);
+        int b = (pixel1 & 0xFF) - (pixel2 & 0xFF);
+        return r * r + g * g + b * b;
     }
 
-    // sequence of indices for seam of current orientation going
-    // from top to bottom.
-    private int[] findSeam() {
-        // Set initial cost and edgeTo for nodes.
-        double[][] cost = new double[width][height];
-        int[][] edgeTo = new int[width][height];
-        for (int i = 0; i < width; i++) {
-            cost[i][0] = 1000;
-            edgeTo[i][0] = -1;
-        }
-        for (int i = 0; i < width; i++) {
-            for (int j = 1; j < height; j++) {
-                cost[i][j] = Double.POSITIVE_INFINITY;
-            }
+    // Shortest path through the energies from the first line to the
+    // last, where a line is a row for vertical seams and a column for
+    // horizontal ones. Pixel k of line l is at index l * lineStep +
+    // k * posStep, so both orientations walk the buffers in place.
+    // Stores the position of the path on each line in path[0..lines)
+    // and returns its cost.
+    private double findSeam(int lines, int span, int lineStep, int posStep, int[] path) {
+        if (cost == null || cost.length < span) {
+            prevCost = new double[span];
+            cost = new double[span];
         }
+        if (edgeTo == null || edgeTo.length < lines * span) edgeTo = new byte[lines * span];
 
-        // relax edges of all vertices in row major order.
-        for (int j = 0; j < height - 1; j++) {
-            for (int i = 0; i < width; i++) {
-                if (i > 0 && cost[i][j] + energy[i - 1][j + 1] < cost[i - 1][j + 1]) {
-                    cost[i - 1][j + 1] = cost[i][j] + energy[i - 1][j + 1];
-                    edgeTo[i - 1][j + 1] = i;
-                }
-                if (cost[i][j] + energy[i][j + 1] < cost[i][j + 1]) {
-                    cost[i][j + 1] = cost[i][j] + energy[i][j + 1];
-                    edgeTo[i][j + 1] = i;
-                }
-                if (i < width - 1 && cost[i][j] + energy[i + 1][j + 1] < cost[i + 1][j + 1]) {
-                    cost[i + 1][j + 1] = cost[i][j] + energy[i + 1][j + 1];
-                    edgeTo[i + 1][j + 1] = i;
-                }
+        // Set initial cost for nodes on the first line.
+        for (int k = 0; k < span; k++) cost[k] = 1000;
+
+        // Nodes on a line depend only on the line before, so long lines
+        // are split into chunks relaxed in parallel.
+        int chunks = 1;
+        if (span >= PARALLEL_SPAN) {
+            chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), span / MIN_CHUNK));
+        }
+        int chunk = (span + chunks - 1) / chunks;
+        for (int l = 1; l < lines; l++) {
+            double[] temp = prevCost;
+            prevCost = cost;
+            cost = temp;
+            if (chunks == 1) relax(l, 0, span, span, lineStep, posStep);
+            else {
+                final int line = l;
+                IntStream.range(0, chunks).parallel().forEach(c -> relax(
+                        line, c * chunk, Math.min(span, (c + 1) * chunk), span, lineStep, posStep));
             }
         }
 
-        // find node on bottom row with lowest cost.
+        // find node on last line with lowest cost.
         int min = 0;
-        for (int i = 1; i < width; i++) {
-            if (cost[i][height - 1] < cost[min][height - 1]) min = i;
+        for (int k = 1; k < span; k++) {
+            if (cost[k] < cost[min]) min = k;
         }
 
-        // put xcoords of nodes on shortest path in order of
-        // increasing row.
-        int[] shortestPath = new int[height];
-        shortestPath[height - 1] = min;
-        for (int j = height - 2; j >= 0; j--) {
-            shortestPath[j] = edgeTo[shortestPath[j + 1]][j + 1];
+        // put positions of nodes on shortest path in order of
+        // increasing line.
+        path[lines - 1] = min;
+        for (int l = lines - 2; l >= 0; l--) {
+            path[l] = path[l + 1] + edgeTo[(l + 1) * span + path[l + 1]];
+        }
+        return cost[min];
+    }
+
+    // Sets the cost and parent of nodes from..to-1 on line l from the
+    // costs on line l - 1. Each node's cost is its energy plus the
+    // cheapest of the three nodes before it. Ties go to the lowest
+    // position, as they did when edges were relaxed from the previous
+    // line in order.
+    private void relax(int l, int from, int to, int span, int lineStep, int posStep) {
+        int p = l * lineStep + from * posStep;
+        int edges = l * span;
+        for (int k = from; k < to; k++, p += posStep) {
+            double e = energy[p];
+            double best = Double.POSITIVE_INFINITY;
+            byte parent = 0;
+            if (k > 0 && prevCost[k - 1] + e < best) {
+                best = prevCost[k - 1] + e;
+                parent = -1;
+            }
+            if (prevCost[k] + e < best) {
+                best = prevCost[k] + e;
+                parent = 0;
+            }
+            if (k < span - 1 && prevCost[k + 1] + e < best) {
+                best = prevCost[k + 1] + e;
+                parent = 1;
+            }
+            cost[k] = best;
+            edgeTo[edges + k] = parent;
         }
-        return shortestPath;
     }
 
     // sequence of indices for vertical seam
     public int[] findVerticalSeam() {
-        if (inverted) invertPic();
-        return findSeam();
+        int[] seam = new int[height];
+        findSeam(height, width, stride, 1, seam);
+        return seam;
     }
 
     // sequence of indices for horizontal seam
     public int[] findHorizontalSeam() {
-        if (inverted) return findSeam();
-        invertPic();
-        return findSeam();
+        int[] seam = new int[width];
+        findSeam(width, height, 1, stride, seam);
+        return seam;
     }
 
-    private void invertPic() {
-        // Transpose color matrix.
-        int[][] b = new int[color[0].length][color.length];
-        for (int j = 0; j < color[0].length; j++) {
-            for (int i = 0; i < color.length; i++) {
-                b[j][i] = color[i][j];
-            }
+    // Removes k vertical seams, one after the other, exactly as k rounds
+    // of findVerticalSeam() and removeVerticalSeam() would, but without
+    // allocating or validating a seam each round.
+    public void removeVerticalSeams(int k) {
+        if (k < 0 || k >= width) throw new IllegalArgumentException();
+        int[] seam = new int[height];
+        for (int n = 0; n < k; n++) {
+            findSeam(height, width, stride, 1, seam);
+            removeVertical(seam);
         }
-        color = b;
+    }
 
-        double[][] c = new double[energy[0].length][energy.length];
-        for (int j = 0; j < energy[0].length; j++) {
-            for (int i = 0; i < energy.length; i++) {
-                c[j][i] = energy[i][j];
-            }
+    // Removes k horizontal seams, as removeVerticalSeams() does.
+    public void removeHorizontalSeams(int k) {
+        if (k < 0 || k >= height) throw new IllegalArgumentException();
+        int[] seam = new int[width];
+        for (int n = 0; n < k; n++) {
+            findSeam(width, height, 1, stride, seam);
+            removeHorizontal(seam);
         }
-        energy = c;
+    }
 
-        inverted = !inverted;
-        int temp = width;
-        width = height;
-        height = temp;
+    // Shrinks the picture to width w and height h. While both dimensions
+    // still need to shrink, removes whichever of the current vertical
+    // and horizontal seams has the lower total energy (vertical on a
+    // tie), then finishes the remaining dimension with the methods above.
+    public void resizeTo(int w, int h) {
+        if (w < 1 || h < 1 || w > width || h > height) throw new IllegalArgumentException();
+        int[] vSeam = new int[height];
+        int[] hSeam = new int[width];
+        while (width > w && height > h) {
+            double vCost = findSeam(height, width, stride, 1, vSeam);
+            double hCost = findSeam(width, height, 1, stride, hSeam);
+            if (vCost <= hCost) removeVertical(vSeam);
+            else removeHorizontal(hSeam);
+        }
+        removeVerticalSeams(width - w);
+        removeHorizontalSeams(height - h);
     }
 
     // Checks if a seam is valid.
     private boolean validSeam(int[] seam, char seamOr) {
         int dist;
         if (seamOr == 'H') {
-            dist = height();
-            if (seam.length != width()) return false;
+            dist = height;
+            if (seam.length != width) return false;
             if (seam[0] < 0 || seam[0] >= dist) return false;
             for (int i = 1; i < seam.length; i++) {
                 if (seam[i] < 0 || seam[i] >= dist) return false;
@@ -205,8 +296,8 @@ public class SeamCarver {
             }
         }
         else {
-            dist = width();
-            if (seam.length != height()) return false;
+            dist = width;
+            if (seam.length != height) return false;
             if (seam[0] < 0 || seam[0] >= dist) return false;
             for (int i = 1; i < seam.length; i++) {
                 if (seam[i] < 0 || seam[i] >= dist) return false;
@@ -217,38 +308,77 @@ public class SeamCarver {
     }
 
     // remove vertical seam from current picture
-    private void removeSeam(int[] seam) {
-        if (seam == null || width <= 1) throw new IllegalArgumentException();
-        int[][] newColor = new int[width - 1][height];
-        double[][] newEnergy = new double[width - 1][height];
+    public void removeVerticalSeam(int[] seam) {
+        if (!validSeam(seam, 'V')) throw new IllegalArgumentException();
+        if (width <= 1) throw new IllegalArgumentException();
+        removeVertical(seam);
+    }
 
-        // update/plug holes in color matrix.
+    // remove horizontal seam from current picture
+    public void removeHorizontalSeam(int[] seam) {
+        if (!validSeam(seam, 'H')) throw new IllegalArgumentException();
+        if (height <= 1) throw new IllegalArgumentException();
+        removeHorizontal(seam);
+    }
+
+    // Removes the vertical seam seam[0..height), which must be valid.
+    private void removeVertical(int[] seam) {
+        // plug holes in color and energy matrices by shifting the rest
+        // of each row left, in place.
         for (int j = 0; j < height; j++) {
-            for (int i = 0; i < seam[j]; i++) newColor[i][j] = color[i][j];
-            for (int i = seam[j]; i < width - 1; i++) newColor[i][j] = color[i + 1][j];
+            int p = j * stride + seam[j];
+            System.arraycopy(color, p + 1, color, p, width - 1 - seam[j]);
+            System.arraycopy(energy, p + 1, energy, p, width - 1 - seam[j]);
         }
+        picture = null;
         width--;
-        color = newColor;
-
-        // update/plug holes in energy matrix.
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) newEnergy[i][j] = calcEnergy(i, j);
-        }
-        energy = newEnergy;
+        updateEnergy(seam, height, true);
     }
 
-    // remove vertical seam from current picture
-    public void removeVerticalSeam(int[] seam) {
-        if (!validSeam(seam, 'V')) throw new IllegalArgumentException();
-        if (inverted) invertPic();
-        removeSeam(seam);
+    // Removes the horizontal seam seam[0..width), which must be valid.
+    private void removeHorizontal(int[] seam) {
+        // plug holes by moving every pixel below the seam up one row,
+        // going row by row so that both rows touched are contiguous.
+        int top = height;
+        for (int i = 0; i < width; i++) top = Math.min(top, seam[i]);
+        for (int j = top; j < height - 1; j++) {
+            int row = j * stride;
+            for (int i = 0; i < width; i++) {
+                if (j >= seam[i]) {
+                    color[row + i] = color[row + stride + i];
+                    energy[row + i] = energy[row + stride + i];
+                }
+            }
+        }
+        picture = null;
+        height--;
+        updateEnergy(seam, width, false);
     }
 
-    // remove horizontal seam from current picture
-    public void removeHorizontalSeam(int[] seam) {
-        if (!validSeam(seam, 'H')) throw new IllegalArgumentException();
-        if (!inverted) invertPic();
-        removeSeam(seam);
+    // Recomputes, after seam was removed, only the energies whose
+    // neighbours changed: on each line (row for a vertical seam, column
+    // for a horizontal one), those next to the seam on that line or on
+    // the lines before and after it.
+    private void updateEnergy(int[] seam, int lines, boolean vertical) {
+        int span = vertical ? width : height;
+        for (int l = 0; l < lines; l++) {
+            int lo = seam[l];
+            int hi = seam[l];
+            if (l > 0) {
+                lo = Math.min(lo, seam[l - 1]);
+                hi = Math.max(hi, seam[l - 1]);
+            }
+            if (l < lines - 1) {
+                lo = Math.min(lo, seam[l + 1]);
+                hi = Math.max(hi, seam[l + 1]);
+            }
+            int from = Math.max(lo - 1, 0);
+            int to = Math.min(hi, span - 1) + 1;
+            if (vertical) energyRow(l, from, to);
+            else {
+                for (int k = from; k < to; k++) energy[k * stride + l] = calcEnergy(l, k);
+            }
+        }
     }
 
     //  unit testing (optional)
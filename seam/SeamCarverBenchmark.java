@@ -0,0 +1,188 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Timing and allocation benchmark for SeamCarver.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Usage: java SeamCarverBenchmark [-n seams] [size ...]
+//
+// For each size (a square picture of that many pixels a side, 512 1024
+// and 2048 by default) times construction, each seam search, seam
+// removal, alternating vertical and horizontal seams, and shrinking by
+// n seams (50 by default). Each operation is warmed up, then repeated
+// for at least MEASURE_NANOS; the table shows the mean time and bytes
+// allocated by the calling thread per operation. Setup between
+// operations, such as finding the seam to remove, is not counted.
+// Pictures are generated from a fixed seed, so runs are comparable.
+public class SeamCarverBenchmark {
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+    private static final int MIN_ITERATIONS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    // The thread bean that counts allocated bytes, or null on a JVM
+    // without one; allocation is then reported as -1.
+    private static com.sun.management.ThreadMXBean threads() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS == null) return 0;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // A w-by-h picture of smooth colour gradients with noise on top, the
+    // same for the same size on every run.
+    static Picture picture(int w, int h) {
+        Random random = new Random(31L * w + h);
+        Picture picture = new Picture(w, h);
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                int r = (255 * i / w + random.nextInt(16)) & 0xFF;
+                int g = (255 * j / h + random.nextInt(16)) & 0xFF;
+                int b = (128 + (i ^ j) % 64 + random.nextInt(16)) & 0xFF;
+                picture.setRGB(i, j, (r << 16) | (g << 8) | b);
+            }
+        }
+        return picture;
+    }
+
+    // One benchmarked operation: setup() runs untimed before each run().
+    private abstract static class Op {
+        void setup() { }
+
+        abstract void run();
+    }
+
+    // Warms op up, then times it, and prints one line of results.
+    private static void measure(String name, int size, Op op) {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NANOS) {
+            op.setup();
+            op.run();
+        }
+        long nanos = 0;
+        long bytes = 0;
+        int iterations = 0;
+        while (nanos < MEASURE_NANOS || iterations < MIN_ITERATIONS) {
+            op.setup();
+            long allocated = allocatedBytes();
+            long t = System.nanoTime();
+            op.run();
+            nanos += System.nanoTime() - t;
+            bytes += allocatedBytes() - allocated;
+            iterations++;
+        }
+        double bytesPerOp = THREADS == null ? -1 : (double) bytes / iterations;
+        StdOut.printf("%-22s %6d %12.3f %12.1f %16.0f%n", name, size,
+                      nanos / 1e6 / iterations, iterations * 1e9 / nanos, bytesPerOp);
+    }
+
+    public static void main(String[] args) {
+        int seams = 50;
+        int[] sizes = { 512, 1024, 2048 };
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-n")) {
+            seams = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (args.length > first) {
+            sizes = new int[args.length - first];
+            for (int i = first; i < args.length; i++) sizes[i - first] = Integer.parseInt(args[i]);
+        }
+        StdOut.printf("%-22s %6s %12s %12s %16s%n", "operation", "size", "ms/op", "ops/s", "bytes/op");
+        for (int size : sizes) run(size, seams);
+    }
+
+    private static void run(final int size, final int seams) {
+        final Picture picture = picture(size, size);
+
+        measure("construct", size, new Op() {
+            void run() {
+                new SeamCarver(picture);
+            }
+        });
+
+        final SeamCarver fixed = new SeamCarver(picture);
+        measure("findVerticalSeam", size, new Op() {
+            void run() {
+                fixed.findVerticalSeam();
+            }
+        });
+        measure("findHorizontalSeam", size, new Op() {
+            void run() {
+                fixed.findHorizontalSeam();
+            }
+        });
+
+        // removes one seam at a time from a carver that is rebuilt,
+        // untimed, once it has lost half its width (or height)
+        measure("removeVerticalSeam", size, new Op() {
+            private SeamCarver sc;
+            private int[] seam;
+
+            void setup() {
+                if (sc == null || sc.width() <= size / 2) sc = new SeamCarver(picture);
+                seam = sc.findVerticalSeam();
+            }
+
+            void run() {
+                sc.removeVerticalSeam(seam);
+            }
+        });
+        measure("removeHorizontalSeam", size, new Op() {
+            private SeamCarver sc;
+            private int[] seam;
+
+            void setup() {
+                if (sc == null || sc.height() <= size / 2) sc = new SeamCarver(picture);
+                seam = sc.findHorizontalSeam();
+            }
+
+            void run() {
+                sc.removeHorizontalSeam(seam);
+            }
+        });
+
+        // finds and removes a vertical then a horizontal seam
+        measure("mixed find+remove", size, new Op() {
+            private SeamCarver sc;
+
+            void setup() {
+                if (sc == null || sc.width() <= size / 2) sc = new SeamCarver(picture);
+            }
+
+            void run() {
+                sc.removeVerticalSeam(sc.findVerticalSeam());
+                sc.removeHorizontalSeam(sc.findHorizontalSeam());
+            }
+        });
+
+        if (seams < size) {
+            measure("shrink by " + seams, size, new Op() {
+                private SeamCarver sc;
+
+                void setup() {
+                    sc = new SeamCarver(picture);
+                }
+
+                void run() {
+                    sc.removeVerticalSeams(seams);
+                    sc.picture();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Seam removal order of a picture, for fast resizing.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Picture;
+
+// Records, for every pixel of a picture, which of the seams SeamCarver
+// would remove one after another takes it out. Once that order is known,
+// the picture SeamCarver would leave after removing any number of seams
+// is a single pass keeping the pixels removed last, with no seam search.
+//
+// Widths and heights are handled separately: ofWidth() keeps the full
+// height and ofHeight() the full width. The order of horizontal seams
+// depends on which vertical seams were removed first, so to change both
+// dimensions, resize one with this class and carve the other with a
+// SeamCarver (or another SeamOrder) on the result.
+//
+// Each order is computed on first use, at the cost of carving the picture
+// down to a single column (or row); it takes an int per pixel.
+public class SeamOrder {
+    private final Picture picture;
+    private final int width;
+    private final int height;
+    // Pixel (x, y) is at index y * width + x.
+    private final int[] color;
+    // Index of the vertical (horizontal) seam that removes each pixel,
+    // or width - 1 (height - 1) for those that are never removed.
+    private int[] vertical;
+    private int[] horizontal;
+
+    public SeamOrder(Picture picture) {
+        if (picture == null) throw new IllegalArgumentException();
+        this.picture = new Picture(picture);
+        width = picture.width();
+        height = picture.height();
+        color = new int[width * height];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) color[j * width + i] = picture.getRGB(i, j);
+        }
+    }
+
+    // width of the original picture
+    public int width() {
+        return width;
+    }
+
+    // height of the original picture
+    public int height() {
+        return height;
+    }
+
+    // number of vertical seams removed before the one through (x, y)
+    public int verticalSeamIndex(int x, int y) {
+        validate(x, y);
+        return verticalOrder()[y * width + x];
+    }
+
+    // number of horizontal seams removed before the one through (x, y)
+    public int horizontalSeamIndex(int x, int y) {
+        validate(x, y);
+        return horizontalOrder()[y * width + x];
+    }
+
+    private void validate(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) throw new IllegalArgumentException();
+    }
+
+    // the picture narrowed to width w by removing vertical seams
+    public Picture ofWidth(int w) {
+        if (w < 1 || w > width) throw new IllegalArgumentException();
+        int[] order = verticalOrder();
+        int removed = width - w;
+        Picture result = new Picture(w, height);
+        for (int j = 0; j < height; j++) {
+            int x = 0;
+            for (int p = j * width; p < (j + 1) * width; p++) {
+                if (order[p] >= removed) result.setRGB(x++, j, color[p]);
+            }
+        }
+        return result;
+    }
+
+    // the picture shortened to height h by removing horizontal seams
+    public Picture ofHeight(int h) {
+        if (h < 1 || h > height) throw new IllegalArgumentException();
+        int[] order = horizontalOrder();
+        int removed = height - h;
+        Picture result = new Picture(width, h);
+        int[] y = new int[width];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int p = j * width + i;
+                if (order[p] >= removed) result.setRGB(i, y[i]++, color[p]);
+            }
+        }
+        return result;
+    }
+
+    // Carves the picture down to one column, noting for each removed
+    // pixel the seam it was on. column holds, for each remaining pixel
+    // of the carver, its x in the original picture, and is shifted the
+    // same way as the carver's pixels.
+    private int[] verticalOrder() {
+        if (vertical != null) return vertical;
+        int[] order = new int[width * height];
+        int[] column = new int[width * height];
+        for (int p = 0; p < column.length; p++) column[p] = p % width;
+        SeamCarver sc = new SeamCarver(picture);
+        for (int s = 0; s < width - 1; s++) {
+            int[] seam = sc.findVerticalSeam();
+            for (int j = 0; j < height; j++) {
+                int p = j * width + seam[j];
+                order[j * width + column[p]] = s;
+                System.arraycopy(column, p + 1, column, p, width - s - 1 - seam[j]);
+            }
+            sc.removeVerticalSeam(seam);
+        }
+        for (int j = 0; j < height; j++) order[j * width + column[j * width]] = width - 1;
+        vertical = order;
+        return vertical;
+    }
+
+    // Same as above for horizontal seams; row holds the original y of
+    // each remaining pixel, column by column.
+    private int[] horizontalOrder() {
+        if (horizontal != null) return horizontal;
+        int[] order = new int[width * height];
+        int[] row = new int[width * height];
+        for (int p = 0; p < row.length; p++) row[p] = p % height;
+        SeamCarver sc = new SeamCarver(picture);
+        for (int s = 0; s < height - 1; s++) {
+            int[] seam = sc.findHorizontalSeam();
+            for (int i = 0; i < width; i++) {
+                int p = i * height + seam[i];
+                order[row[p] * width + i] = s;
+                System.arraycopy(row, p + 1, row, p, height - s - 1 - seam[i]);
+            }
+            sc.removeHorizontalSeam(seam);
+        }
+        for (int i = 0; i < width; i++) order[row[i * height] * width + i] = height - 1;
+        horizontal = order;
+        return horizontal;
+    }
+}
@@ -0,0 +1,302 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Per-vertex ancestor lists of a DAG, for shortest ancestral
+ *               path queries without a graph search.
+ **************************************************************************** */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class AncestorIndex {
+    private final int V;
+    // The list of v starts at bytes[start[v]]: a count, then for each
+    // ancestor in increasing order the gap from the previous ancestor
+    // and the distance to it, all as variable length ints.
+    private final int[] start;
+    private byte[] bytes;
+    private int size;
+    private final long buildMillis;
+
+    // Builds the ancestor lists of dag. topo must list every vertex
+    // before all the vertices it has edges to, as dag.topologicalOrder()
+    // does.
+    public AncestorIndex(CompactDigraph dag, int[] topo) {
+        if (dag == null || topo == null || topo.length != dag.V()) {
+            throw new IllegalArgumentException();
+        }
+        long t0 = System.currentTimeMillis();
+        V = dag.V();
+        start = new int[V];
+        bytes = new byte[Math.max(16, 4 * V)];
+
+        // A vertex's ancestors are itself plus its parents' ancestors one
+        // step further away, so encode in reverse topological order.
+        List list = new List();
+        List parent = new List();
+        List merged = new List();
+        for (int i = V - 1; i >= 0; i--) {
+            int v = topo[i];
+            list.clear();
+            list.add(v, 0);
+            for (int e = dag.adjStart(v); e < dag.adjEnd(v); e++) {
+                decode(dag.target(e), parent);
+                merge(list, parent, 1, merged);
+                List t = list;
+                list = merged;
+                merged = t;
+            }
+            start[v] = size;
+            encode(list);
+        }
+        bytes = Arrays.copyOf(bytes, size);
+        buildMillis = System.currentTimeMillis() - t0;
+    }
+
+    private AncestorIndex(int[] start, byte[] bytes, long buildMillis) {
+        this.V = start.length;
+        this.start = start;
+        this.bytes = bytes;
+        this.size = bytes.length;
+        this.buildMillis = buildMillis;
+    }
+
+    // writes the index in the layout read by read()
+    void write(DataOutputStream out) throws IOException {
+        Snapshot.writeInts(out, start, V);
+        Snapshot.writeBytes(out, bytes, size);
+        out.writeLong(buildMillis);
+    }
+
+    // Reads an index over V vertices written by write(), checking that
+    // every list decodes within bytes to vertices below V.
+    static AncestorIndex read(ByteBuffer in, int V) {
+        int[] start = Snapshot.readInts(in);
+        byte[] bytes = Snapshot.readBytes(in);
+        if (start.length != V) throw new IllegalArgumentException("corrupt snapshot");
+        for (int v = 0; v < V; v++) {
+            if (!validList(bytes, start[v], V)) throw new IllegalArgumentException("corrupt snapshot");
+        }
+        return new AncestorIndex(start, bytes, in.getLong());
+    }
+
+    // Does the list at bytes[pos] end within bytes, with its vertices
+    // increasing and below V and its distances non-negative?
+    private static boolean validList(byte[] bytes, int pos, int V) {
+        if (pos < 0) return false;
+        int remaining = -1;
+        boolean gapNext = true;
+        long vertex = 0;
+        boolean first = true;
+        while (remaining != 0) {
+            int x = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (pos >= bytes.length || shift > 28) return false;
+                byte b = bytes[pos++];
+                x |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            if (x < 0) return false;
+            if (remaining == -1) remaining = x;
+            else if (gapNext) {
+                if (x == 0 && !first) return false;
+                vertex += x;
+                if (vertex >= V) return false;
+                first = false;
+                gapNext = false;
+            }
+            else {
+                gapNext = true;
+                remaining--;
+            }
+        }
+        return true;
+    }
+
+    // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
+    public int length(Iterable<Integer> v, Iterable<Integer> w) {
+        return lengthAndAncestor(vertices(v), vertices(w))[0];
+    }
+
+    // a common ancestor that participates in shortest ancestral path; -1 if no such path
+    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
+        return lengthAndAncestor(vertices(v), vertices(w))[1];
+    }
+
+    // { length, ancestor } of a shortest ancestral path between v and w
+    int[] lengthAndAncestor(int[] v, int[] w) {
+        List a = union(v);
+        List b = union(w);
+        return intersect(a.vertex, a.dist, a.size, b.vertex, b.dist, b.size);
+    }
+
+    // same as above for two ancestor lists as returned by ancestors()
+    static int[] intersect(int[][] a, int[][] b) {
+        return intersect(a[0], a[1], a[0].length, b[0], b[1], b[0].length);
+    }
+
+    // Walks two ancestor lists, each sorted by vertex, in step and returns
+    // { length, ancestor } of the common ancestor with the smallest sum
+    // of distances; -1s if there is none.
+    private static int[] intersect(int[] aVertex, int[] aDist, int aSize,
+                                   int[] bVertex, int[] bDist, int bSize) {
+        int length = -1;
+        int ancestor = -1;
+        int i = 0;
+        int j = 0;
+        while (i < aSize && j < bSize) {
+            if (aVertex[i] < bVertex[j]) i++;
+            else if (aVertex[i] > bVertex[j]) j++;
+            else {
+                int dist = aDist[i] + bDist[j];
+                if (length == -1 || dist < length) {
+                    length = dist;
+                    ancestor = aVertex[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return new int[] { length, ancestor };
+    }
+
+    // ancestors of the vertices in v as { vertices, distances }, with
+    // the vertices in increasing order
+    int[][] ancestors(int[] v) {
+        List list = union(v);
+        return new int[][] {
+                Arrays.copyOf(list.vertex, list.size), Arrays.copyOf(list.dist, list.size)
+        };
+    }
+
+    // time taken by the constructor
+    public long buildMillis() {
+        return buildMillis;
+    }
+
+    // approximate heap footprint in bytes
+    public long memoryUsage() {
+        return 16 + 4L * V + 16 + bytes.length + 32;
+    }
+
+    // Union of the ancestor lists of the vertices in v, keeping the
+    // smaller distance for ancestors they share.
+    private List union(int[] v) {
+        if (v == null) throw new IllegalArgumentException();
+        List result = new List();
+        List one = new List();
+        List merged = new List();
+        for (int x : v) {
+            if (x < 0 || x >= V) throw new IllegalArgumentException();
+            decode(x, one);
+            merge(result, one, 0, merged);
+            List t = result;
+            result = merged;
+            merged = t;
+        }
+        return result;
+    }
+
+    private static int[] vertices(Iterable<Integer> v) {
+        if (v == null) throw new IllegalArgumentException();
+        int n = 0;
+        for (Integer x : v) {
+            if (x == null) throw new IllegalArgumentException();
+            n++;
+        }
+        int[] a = new int[n];
+        int i = 0;
+        for (int x : v) a[i++] = x;
+        return a;
+    }
+
+    // Sets c to the union of a and b, with delta added to b's distances.
+    private static void merge(List a, List b, int delta, List c) {
+        c.clear();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.vertex[i] < b.vertex[j])) {
+                c.add(a.vertex[i], a.dist[i]);
+                i++;
+            }
+            else if (i == a.size || b.vertex[j] < a.vertex[i]) {
+                c.add(b.vertex[j], b.dist[j] + delta);
+                j++;
+            }
+            else {
+                c.add(a.vertex[i], Math.min(a.dist[i], b.dist[j] + delta));
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private void encode(List list) {
+        writeInt(list.size);
+        int prev = 0;
+        for (int i = 0; i < list.size; i++) {
+            writeInt(list.vertex[i] - prev);
+            writeInt(list.dist[i]);
+            prev = list.vertex[i];
+        }
+    }
+
+    private void writeInt(int x) {
+        if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        while ((x & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((x & 0x7F) | 0x80);
+            x >>>= 7;
+        }
+        bytes[size++] = (byte) x;
+    }
+
+    private void decode(int v, List list) {
+        list.clear();
+        int pos = start[v];
+        int remaining = -1;    // entries left to read; -1 until the count is read
+        boolean gapNext = true;
+        int vertex = 0;
+        while (remaining != 0) {
+            int x = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                x |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            if (remaining == -1) remaining = x;
+            else if (gapNext) {
+                vertex += x;
+                gapNext = false;
+            }
+            else {
+                list.add(vertex, x);
+                gapNext = true;
+                remaining--;
+            }
+        }
+    }
+
+    // Ancestors in increasing order with their distances.
+    private static class List {
+        private int[] vertex = new int[16];
+        private int[] dist = new int[16];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int v, int d) {
+            if (size == vertex.length) {
+                vertex = Arrays.copyOf(vertex, 2 * size);
+                dist = Arrays.copyOf(dist, 2 * size);
+            }
+            vertex[size] = v;
+            dist[size] = d;
+            size++;
+        }
+    }
+}
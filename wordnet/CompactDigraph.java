@@ -0,0 +1,157 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Immutable digraph in compressed sparse row form.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Digraph;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class CompactDigraph {
+    private final int V;
+    // The targets of v's edges are targets[offsets[v]..offsets[v + 1]).
+    private final int[] offsets;
+    private final int[] targets;
+
+    // copies digraph dg
+    public CompactDigraph(Digraph dg) {
+        if (dg == null) throw new IllegalArgumentException();
+        V = dg.V();
+        offsets = new int[V + 1];
+        targets = new int[dg.E()];
+        int e = 0;
+        for (int v = 0; v < V; v++) {
+            offsets[v] = e;
+            for (int w : dg.adj(v)) targets[e++] = w;
+        }
+        offsets[V] = e;
+    }
+
+    // builds the digraph on V vertices with the given edges
+    CompactDigraph(int V, EdgeList edges) {
+        if (V < 0) throw new IllegalArgumentException();
+        this.V = V;
+        int E = edges.size;
+        int[] from = edges.from;
+        int[] to = edges.to;
+        offsets = new int[V + 1];
+        targets = new int[E];
+        for (int i = 0; i < E; i++) {
+            validateVertex(from[i]);
+            validateVertex(to[i]);
+            offsets[from[i] + 1]++;
+        }
+        for (int v = 0; v < V; v++) offsets[v + 1] += offsets[v];
+        int[] next = Arrays.copyOf(offsets, V);
+        for (int i = 0; i < E; i++) targets[next[from[i]]++] = to[i];
+    }
+
+    private CompactDigraph(int[] offsets, int[] targets) {
+        this.V = offsets.length - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    // writes the digraph in the layout read by read()
+    void write(DataOutputStream out) throws IOException {
+        Snapshot.writeInts(out, offsets, offsets.length);
+        Snapshot.writeInts(out, targets, targets.length);
+    }
+
+    static CompactDigraph read(ByteBuffer in) {
+        int[] offsets = Snapshot.readInts(in);
+        int[] targets = Snapshot.readInts(in);
+        if (offsets.length == 0 || offsets[0] != 0
+                || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("corrupt digraph");
+        }
+        for (int v = 0; v + 1 < offsets.length; v++) {
+            if (offsets[v] > offsets[v + 1]) throw new IllegalArgumentException("corrupt digraph");
+        }
+        for (int w : targets) {
+            if (w < 0 || w >= offsets.length - 1) throw new IllegalArgumentException("corrupt digraph");
+        }
+        return new CompactDigraph(offsets, targets);
+    }
+
+    // Growable list of edges v -> w waiting to be packed into rows.
+    static class EdgeList {
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int size;
+
+        void add(int v, int w) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, 2 * size);
+                to = Arrays.copyOf(to, 2 * size);
+            }
+            from[size] = v;
+            to[size] = w;
+            size++;
+        }
+    }
+
+    // number of vertices
+    public int V() {
+        return V;
+    }
+
+    // number of edges
+    public int E() {
+        return targets.length;
+    }
+
+    // number of edges leaving v
+    public int outdegree(int v) {
+        validateVertex(v);
+        return offsets[v + 1] - offsets[v];
+    }
+
+    // The edges leaving v are edge indices adjStart(v) to adjEnd(v) - 1;
+    // target(i) is the vertex edge i points to. Used by traversals
+    // in place of adj() to avoid boxing and iterator allocation.
+    int adjStart(int v) {
+        return offsets[v];
+    }
+
+    int adjEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    int target(int i) {
+        return targets[i];
+    }
+
+    // Vertices in an order where every vertex comes before the vertices it
+    // has edges to; null if the digraph has a directed cycle.
+    public int[] topologicalOrder() {
+        int[] indegree = new int[V];
+        for (int target : targets) indegree[target]++;
+        int[] order = new int[V];
+        int tail = 0;
+        for (int v = 0; v < V; v++) {
+            if (indegree[v] == 0) order[tail++] = v;
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = order[head];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (--indegree[targets[e]] == 0) order[tail++] = targets[e];
+            }
+        }
+        if (tail < V) return null;
+        return order;
+    }
+
+    // approximate heap footprint in bytes
+    public long memoryUsage() {
+        return 16 + 4L * offsets.length + 16 + 4L * targets.length + 16;
+    }
+
+    private void validateVertex(int v) {
+        if (v < 0 || v >= V) throw new IllegalArgumentException("vertex " + v);
+    }
+}
@@ -0,0 +1,94 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Open addressing hash table from nouns to synset ids.
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class NounTable {
+    // Linear probing over parallel arrays, kept at most half full.
+    private String[] keys;
+    private int[][] values;
+    private int size;
+    // all keys in increasing order, built on the first call to sortedKeys()
+    private volatile List<String> sorted;
+
+    NounTable(int expected) {
+        int capacity = 16;
+        while (capacity < 2 * expected) capacity *= 2;
+        keys = new String[capacity];
+        values = new int[capacity][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // synset ids of noun in increasing order; null if it is not in the table
+    int[] get(String noun) {
+        int mask = keys.length - 1;
+        for (int i = hash(noun) & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(noun)) return values[i];
+        }
+        return null;
+    }
+
+    boolean contains(String noun) {
+        return get(noun) != null;
+    }
+
+    // Associates noun with ids, which the table keeps without copying.
+    void put(String noun, int[] ids) {
+        if (2 * (size + 1) > keys.length) resize(2 * keys.length);
+        int mask = keys.length - 1;
+        int i = hash(noun) & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(noun)) {
+                values[i] = ids;
+                return;
+            }
+        }
+        keys[i] = noun;
+        values[i] = ids;
+        size++;
+        sorted = null;
+    }
+
+    Iterable<String> sortedKeys() {
+        List<String> s = sorted;
+        if (s == null) {
+            String[] a = new String[size];
+            int n = 0;
+            for (String key : keys) {
+                if (key != null) a[n++] = key;
+            }
+            Arrays.sort(a);
+            s = Collections.unmodifiableList(Arrays.asList(a));
+            sorted = s;
+        }
+        return s;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[][] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity][];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = hash(oldKeys[j]) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
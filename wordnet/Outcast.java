@@ -7,6 +7,8 @@
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.util.stream.IntStream;
+
 public class Outcast {
     private WordNet wordnet;
 
@@ -17,14 +19,33 @@ public class Outcast {
 
     // given an array of WordNet nouns, return an outcast
     public String outcast(String[] nouns) {
-        int[] distances = new int[nouns.length];
-        for (int i = 0; i < nouns.length; i++) {
-            for (int j = 0; j < nouns.length; j++) {
-                distances[i] += wordnet.distance(nouns[i], nouns[j]);
-            }
-        }
+        if (nouns == null) throw new IllegalArgumentException();
+        final int n = nouns.length;
+
+        // Search from each noun once, in parallel; every pair's distance
+        // is then an intersection of the two nouns' ancestor lists.
+        final int[][][] ancestors = new int[n][][];
+        IntStream.range(0, n).parallel()
+                 .forEach(i -> ancestors[i] = wordnet.ancestors(nouns[i]));
+
+        // Distances are symmetric and zero on the diagonal, so score each
+        // pair i < j once and credit it to both nouns. Each worker sums
+        // into its own array and the arrays are added at the end.
+        int[] distances = IntStream.range(0, n).parallel().collect(
+                () -> new int[n],
+                (sums, i) -> {
+                    for (int j = i + 1; j < n; j++) {
+                        int dist = WordNet.distance(ancestors[i], ancestors[j]);
+                        sums[i] += dist;
+                        sums[j] += dist;
+                    }
+                },
+                (sums, other) -> {
+                    for (int i = 0; i < n; i++) sums[i] += other[i];
+                });
+
         int max = 0;
-        for (int i = 1; i < nouns.length; i++) {
+        for (int i = 1; i < n; i++) {
             if (distances[i] > distances[max]) max = i;
         }
         return nouns[max];
@@ -4,90 +4,377 @@
  *  Description:
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.util.Arrays;
+
 public class SAP {
-    private Digraph dg;
+    private CompactDigraph dg;
+
+    // Scratch for callers on a single thread, or one per thread when
+    // the SAP is shared between threads; exactly one of these is set.
+    private Search search;
+    private ThreadLocal<Search> threadSearch;
 
     // constructor takes a digraph, not necessarily a DAG.
     public SAP(Digraph dg) {
-        this.dg = new Digraph(dg);
+        this(dg, false);
+    }
+
+    // If threadConfined, each calling thread gets its own search buffers,
+    // so one SAP can serve concurrent queries without locking.
+    public SAP(Digraph dg, boolean threadConfined) {
+        this(new CompactDigraph(dg), threadConfined);
+    }
+
+    // same as above for a digraph already in compact form
+    public SAP(CompactDigraph dg, boolean threadConfined) {
+        if (dg == null) throw new IllegalArgumentException();
+        this.dg = dg;
+        final int n = dg.V();
+        if (threadConfined) {
+            threadSearch = new ThreadLocal<Search>() {
+                protected Search initialValue() {
+                    return new Search(n);
+                }
+            };
+        }
+        else search = new Search(n);
     }
 
     // length of shortest ancestral path between v and w; -1 if no such path
     public int length(int v, int w) {
-        BreadthFirstDirectedPaths vPaths = new BreadthFirstDirectedPaths(dg, v);
-        BreadthFirstDirectedPaths wPaths = new BreadthFirstDirectedPaths(dg, w);
-        int minDist = -1;
-        for (int i = 0; i < dg.V(); i++) {
-            if (vPaths.hasPathTo(i) && wPaths.hasPathTo(i)) {
-                int dist = vPaths.distTo(i) + wPaths.distTo(i);
-                if (minDist == -1 || minDist > dist) minDist = dist;
-            }
-        }
-        return minDist;
+        Search s = searchPair(v, w);
+        return s.lastLength;
     }
 
     // a common ancestor of v and w that participates in a shortest ancestral path; -1 if no such path
     public int ancestor(int v, int w) {
-        BreadthFirstDirectedPaths vPaths = new BreadthFirstDirectedPaths(dg, v);
-        BreadthFirstDirectedPaths wPaths = new BreadthFirstDirectedPaths(dg, w);
-        int minDist = -1;
-        int ancestor = -1;
-        for (int i = 0; i < dg.V(); i++) {
-            if (vPaths.hasPathTo(i) && wPaths.hasPathTo(i)) {
-                int dist = vPaths.distTo(i) + wPaths.distTo(i) + 1;
-                if (minDist == -1 || minDist > dist) {
-                    minDist = dist;
-                    ancestor = i;
-                }
-            }
-        }
-        return ancestor;
+        Search s = searchPair(v, w);
+        return s.lastAncestor;
     }
 
     // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
     public int length(Iterable<Integer> v, Iterable<Integer> w) {
-        if (v == null || w == null) throw new IllegalArgumentException();
-        for (Integer n : v) if (n == null) throw new IllegalArgumentException();
-        for (Integer n : w) if (n == null) throw new IllegalArgumentException();
-        BreadthFirstDirectedPaths vPaths = new BreadthFirstDirectedPaths(dg, v);
-        BreadthFirstDirectedPaths wPaths = new BreadthFirstDirectedPaths(dg, w);
-        int minDist = -1;
-        for (int i = 0; i < dg.V(); i++) {
-            if (vPaths.hasPathTo(i) && wPaths.hasPathTo(i)) {
-                int dist = vPaths.distTo(i) + wPaths.distTo(i);
-                if (minDist == -1 || minDist > dist) {
-                    minDist = dist;
-                }
-            }
-        }
-        return minDist;
+        Search s = searchSets(vertices(v), vertices(w));
+        return s.bestLength;
     }
 
     // a common ancestor that participates in shortest ancestral path; -1 if no such path
     public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
-        if (v == null || w == null) throw new IllegalArgumentException();
-        for (Integer n : v) if (n == null) throw new IllegalArgumentException();
-        for (Integer n : w) if (n == null) throw new IllegalArgumentException();
-        BreadthFirstDirectedPaths vPaths = new BreadthFirstDirectedPaths(dg, v);
-        BreadthFirstDirectedPaths wPaths = new BreadthFirstDirectedPaths(dg, w);
-        int minDist = -1;
-        int ancestor = -1;
-        for (int i = 0; i < dg.V(); i++) {
-            if (vPaths.hasPathTo(i) && wPaths.hasPathTo(i)) {
-                int dist = vPaths.distTo(i) + wPaths.distTo(i) + 1;
-                if (minDist == -1 || minDist > dist) {
-                    minDist = dist;
-                    ancestor = i;
+        Search s = searchSets(vertices(v), vertices(w));
+        return s.bestAncestor;
+    }
+
+    // length and ancestor of a shortest ancestral path between any vertex
+    // in v and any vertex in w, from the same search; -1s if no such path
+    int[] lengthAndAncestor(int[] v, int[] w) {
+        validateVertices(v);
+        validateVertices(w);
+        Search s = searchSets(v, w);
+        return new int[] { s.bestLength, s.bestAncestor };
+    }
+
+    // Searches from the vertices in v once, for answering queries from v
+    // to many different w.
+    public Source source(Iterable<Integer> v) {
+        return new Source(vertices(v));
+    }
+
+    // same as above for an array of vertices
+    Source source(int[] v) {
+        validateVertices(v);
+        return new Source(v);
+    }
+
+    // Distances from a fixed set of vertices v to every vertex, against
+    // which each query only searches from the w side, and stops once that
+    // search cannot beat the best ancestral path found so far.
+    public class Source {
+        private final int[] dist;
+
+        private Source(int[] v) {
+            int[][] reached = ancestors(v);
+            dist = new int[dg.V()];
+            Arrays.fill(dist, -1);
+            for (int i = 0; i < reached[0].length; i++) dist[reached[0][i]] = reached[1][i];
+        }
+
+        // length of shortest ancestral path between v and any vertex in w; -1 if no such path
+        public int length(Iterable<Integer> w) {
+            return search(vertices(w)).bestLength;
+        }
+
+        // a common ancestor that participates in shortest ancestral path; -1 if no such path
+        public int ancestor(Iterable<Integer> w) {
+            return search(vertices(w)).bestAncestor;
+        }
+
+        int length(int[] w) {
+            validateVertices(w);
+            return search(w).bestLength;
+        }
+
+        int ancestor(int[] w) {
+            validateVertices(w);
+            return search(w).bestAncestor;
+        }
+
+        private Search search(int[] w) {
+            Search s = buffers();
+            s.reset();
+            for (int x : w) s.sourceW(x);
+            s.runAgainst(dg, dist);
+            return s;
+        }
+    }
+
+    // Every vertex reachable from a vertex in v, as { vertices, distances }
+    // with the vertices in increasing order.
+    int[][] ancestors(int[] v) {
+        validateVertices(v);
+        Search s = buffers();
+        s.reset();
+        for (int x : v) s.sourceV(x);
+        return s.reachV(dg);
+    }
+
+    private Search buffers() {
+        if (search != null) return search;
+        return threadSearch.get();
+    }
+
+    private void validateVertex(int v) {
+        if (v < 0 || v >= dg.V()) throw new IllegalArgumentException();
+    }
+
+    private void validateVertices(int[] v) {
+        if (v == null) throw new IllegalArgumentException();
+        for (int n : v) validateVertex(n);
+    }
+
+    // the vertices in v, checked
+    private int[] vertices(Iterable<Integer> v) {
+        if (v == null) throw new IllegalArgumentException();
+        int n = 0;
+        for (Integer x : v) {
+            if (x == null) throw new IllegalArgumentException();
+            validateVertex(x);
+            n++;
+        }
+        int[] a = new int[n];
+        int i = 0;
+        for (int x : v) a[i++] = x;
+        return a;
+    }
+
+    // Runs the search for a single pair unless it is the pair
+    // (in either order) answered last time.
+    private Search searchPair(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        Search s = buffers();
+        if ((v == s.lastV && w == s.lastW) || (v == s.lastW && w == s.lastV)) return s;
+        s.reset();
+        s.sourceV(v);
+        s.sourceW(w);
+        s.run(dg);
+        s.lastV = v;
+        s.lastW = w;
+        s.lastLength = s.bestLength;
+        s.lastAncestor = s.bestAncestor;
+        return s;
+    }
+
+    private Search searchSets(int[] v, int[] w) {
+        Search s = buffers();
+        s.reset();
+        for (int x : v) s.sourceV(x);
+        for (int x : w) s.sourceW(x);
+        s.run(dg);
+        return s;
+    }
+
+    // Buffers for a bidirectional BFS from v and w, allocated once per
+    // SAP (or per thread). A vertex counts as reached from a side only
+    // if its mark equals the current epoch, so a reset touches nothing
+    // but the epoch counter and a query allocates nothing.
+    private static class Search {
+        private final int[] distV;
+        private final int[] distW;
+        private final int[] markV;
+        private final int[] markW;
+        private final int[] queueV;
+        private final int[] queueW;
+        private int epoch;
+        private int tailV;
+        private int tailW;
+
+        // Set by run(); -1 if no such path.
+        private int bestLength;
+        private int bestAncestor;
+
+        // Result of the most recent single vertex query.
+        private int lastV = -1;
+        private int lastW = -1;
+        private int lastLength;
+        private int lastAncestor;
+
+        Search(int n) {
+            distV = new int[n];
+            distW = new int[n];
+            markV = new int[n];
+            markW = new int[n];
+            queueV = new int[n];
+            queueW = new int[n];
+        }
+
+        void reset() {
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(markV, 0);
+                Arrays.fill(markW, 0);
+                epoch = 1;
+            }
+            tailV = 0;
+            tailW = 0;
+            bestLength = -1;
+            bestAncestor = -1;
+        }
+
+        void sourceV(int s) {
+            if (markV[s] == epoch) return;
+            markV[s] = epoch;
+            distV[s] = 0;
+            queueV[tailV++] = s;
+        }
+
+        void sourceW(int s) {
+            if (markW[s] == epoch) return;
+            markW[s] = epoch;
+            distW[s] = 0;
+            queueW[tailW++] = s;
+            if (markV[s] == epoch && bestLength == -1) {
+                bestLength = 0;
+                bestAncestor = s;
+            }
+        }
+
+        // Runs the BFS from the v side to completion and returns what it
+        // reached, sorted by vertex.
+        int[][] reachV(CompactDigraph dg) {
+            for (int head = 0; head < tailV; head++) {
+                int x = queueV[head];
+                int end = dg.adjEnd(x);
+                for (int e = dg.adjStart(x); e < end; e++) {
+                    int y = dg.target(e);
+                    if (markV[y] == epoch) continue;
+                    markV[y] = epoch;
+                    distV[y] = distV[x] + 1;
+                    queueV[tailV++] = y;
+                }
+            }
+            long[] reached = new long[tailV];
+            for (int i = 0; i < tailV; i++) {
+                reached[i] = ((long) queueV[i] << 32) | distV[queueV[i]];
+            }
+            Arrays.sort(reached);
+            int[][] result = new int[2][tailV];
+            for (int i = 0; i < tailV; i++) {
+                result[0][i] = (int) (reached[i] >>> 32);
+                result[1][i] = (int) reached[i];
+            }
+            return result;
+        }
+
+        // Runs the BFS from the w side only, against known distances
+        // from v (-1 where v does not reach).
+        void runAgainst(CompactDigraph dg, int[] distFromV) {
+            for (int i = 0; i < tailW; i++) {
+                int x = queueW[i];
+                if (distFromV[x] != -1 && (bestLength == -1 || distFromV[x] < bestLength)) {
+                    bestLength = distFromV[x];
+                    bestAncestor = x;
+                }
+            }
+            int head = 0;
+            for (int depth = 0; head < tailW && (bestLength == -1 || depth + 1 < bestLength); depth++) {
+                int levelEnd = tailW;
+                for (; head < levelEnd; head++) {
+                    int end = dg.adjEnd(queueW[head]);
+                    for (int e = dg.adjStart(queueW[head]); e < end; e++) {
+                        int x = dg.target(e);
+                        if (markW[x] == epoch) continue;
+                        markW[x] = epoch;
+                        distW[x] = depth + 1;
+                        queueW[tailW++] = x;
+                        if (distFromV[x] != -1 && (bestLength == -1 || distW[x] + distFromV[x] < bestLength)) {
+                            bestLength = distW[x] + distFromV[x];
+                            bestAncestor = x;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Expands one BFS level at a time, always on the side with the
+        // smaller frontier. A side stops once its next level cannot beat
+        // the best ancestral path found so far, so the search only touches
+        // the vertices near v and w instead of the whole digraph.
+        void run(CompactDigraph dg) {
+            int headV = 0;
+            int headW = 0;
+            int depthV = 0;
+            int depthW = 0;
+            while (true) {
+                boolean expandV = headV < tailV && (bestLength == -1 || depthV + 1 < bestLength);
+                boolean expandW = headW < tailW && (bestLength == -1 || depthW + 1 < bestLength);
+                if (!expandV && !expandW) return;
+                if (expandV && (!expandW || tailV - headV <= tailW - headW)) {
+                    int levelEnd = tailV;
+                    tailV = expandLevel(dg, queueV, headV, levelEnd, tailV, depthV,
+                                        distV, markV, distW, markW);
+                    headV = levelEnd;
+                    depthV++;
+                }
+                else {
+                    int levelEnd = tailW;
+                    tailW = expandLevel(dg, queueW, headW, levelEnd, tailW, depthW,
+                                        distW, markW, distV, markV);
+                    headW = levelEnd;
+                    depthW++;
+                }
+            }
+        }
+
+        // Visits the unmarked neighbours of queue[head..levelEnd), all at
+        // distance depth, recording any vertex already reached from the
+        // other side as a candidate ancestor. Returns the new queue tail.
+        private int expandLevel(CompactDigraph dg, int[] queue, int head, int levelEnd, int tail,
+                                int depth, int[] dist, int[] mark,
+                                int[] otherDist, int[] otherMark) {
+            for (int i = head; i < levelEnd; i++) {
+                int end = dg.adjEnd(queue[i]);
+                for (int e = dg.adjStart(queue[i]); e < end; e++) {
+                    int x = dg.target(e);
+                    if (mark[x] == epoch) continue;
+                    mark[x] = epoch;
+                    dist[x] = depth + 1;
+                    queue[tail++] = x;
+                    if (otherMark[x] == epoch) {
+                        int length = dist[x] + otherDist[x];
+                        if (bestLength == -1 || length < bestLength) {
+                            bestLength = length;
+                            bestAncestor = x;
+                        }
+                    }
                 }
             }
+            return tail;
         }
-        return ancestor;
     }
 
     public static void main(String[] args) {
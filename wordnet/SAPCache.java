@@ -0,0 +1,145 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Size-bounded cache of SAP results for pairs of vertex sets.
+ **************************************************************************** */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SAPCache {
+    private final SAP sap;
+    private final int capacity;
+    private final LinkedHashMap<Key, int[]> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Caches up to capacity results of sap, evicting the least recently
+    // used entry if lru, else the oldest one. A capacity of 0 or less
+    // turns the cache off and every query goes straight to sap.
+    public SAPCache(SAP sap, int capacity, boolean lru) {
+        if (sap == null) throw new IllegalArgumentException();
+        this.sap = sap;
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<Key, int[]>(16, 0.75f, lru) {
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                return size() > SAPCache.this.capacity;
+            }
+        };
+    }
+
+    // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
+    public int length(Iterable<Integer> v, Iterable<Integer> w) {
+        return lookup(sorted(v), sorted(w))[0];
+    }
+
+    // a common ancestor that participates in shortest ancestral path; -1 if no such path
+    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
+        return lookup(sorted(v), sorted(w))[1];
+    }
+
+    // same as above for vertex sets given as arrays in increasing order
+    int length(int[] v, int[] w) {
+        return lookup(v, w)[0];
+    }
+
+    int ancestor(int[] v, int[] w) {
+        return lookup(v, w)[1];
+    }
+
+    // number of queries answered from the cache
+    public long hits() {
+        return hits.get();
+    }
+
+    // number of queries passed on to the SAP
+    public long misses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    // Returns { length, ancestor } for v and w, searching on a miss.
+    // The search itself runs outside the lock, so two threads missing
+    // on the same pair may both search; they store the same answer.
+    private int[] lookup(int[] v, int[] w) {
+        if (capacity <= 0) {
+            misses.incrementAndGet();
+            return sap.lengthAndAncestor(v, w);
+        }
+        Key key = new Key(v, w);
+        int[] result;
+        synchronized (results) {
+            result = results.get(key);
+        }
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+        misses.incrementAndGet();
+        result = sap.lengthAndAncestor(v, w);
+        synchronized (results) {
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    private static int[] sorted(Iterable<Integer> v) {
+        if (v == null) throw new IllegalArgumentException();
+        int n = 0;
+        for (Integer x : v) {
+            if (x == null) throw new IllegalArgumentException();
+            n++;
+        }
+        int[] a = new int[n];
+        int i = 0;
+        for (int x : v) a[i++] = x;
+        Arrays.sort(a);
+        return a;
+    }
+
+    // Unordered pair of sorted vertex sets.
+    private static class Key {
+        private final int[] a;
+        private final int[] b;
+        private final int hash;
+
+        Key(int[] v, int[] w) {
+            int hv = Arrays.hashCode(v);
+            int hw = Arrays.hashCode(w);
+            // Put the pair in a canonical order so (v, w) and (w, v) match.
+            if (hv < hw || (hv == hw && compare(v, w) <= 0)) {
+                a = v;
+                b = w;
+            }
+            else {
+                a = w;
+                b = v;
+            }
+            hash = 31 * Arrays.hashCode(a) + Arrays.hashCode(b);
+        }
+
+        private static int compare(int[] v, int[] w) {
+            for (int i = 0; i < v.length && i < w.length; i++) {
+                if (v[i] != w[i]) return v[i] < w[i] ? -1 : 1;
+            }
+            return v.length - w.length;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && Arrays.equals(a, k.a) && Arrays.equals(b, k.b);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Helpers for the binary WordNet snapshot format.
+ **************************************************************************** */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+final class Snapshot {
+    // Header of every snapshot. Bump VERSION whenever the layout written by
+    // WordNet.save() or the classes it saves changes, so that snapshots
+    // from older code are rejected instead of misread.
+    static final int MAGIC = 0x574e534e;    // "WNSN"
+    static final int VERSION = 2;
+
+    private Snapshot() { }
+
+    static void writeInts(DataOutputStream out, int[] a, int n) throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) out.writeInt(a[i]);
+    }
+
+    static int[] readInts(ByteBuffer in) {
+        int[] a = new int[length(in, 4)];
+        in.asIntBuffer().get(a);
+        in.position(in.position() + 4 * a.length);
+        return a;
+    }
+
+    // Reads the element count stored before an array, checking that that
+    // many elements of elementSize bytes are left, so a corrupt count is
+    // reported as such instead of failing the allocation.
+    private static int length(ByteBuffer in, int elementSize) {
+        int n = in.getInt();
+        if (n < 0 || (long) n * elementSize > in.remaining()) {
+            throw new IllegalArgumentException("corrupt snapshot");
+        }
+        return n;
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] a, int n) throws IOException {
+        out.writeInt(n);
+        out.write(a, 0, n);
+    }
+
+    static byte[] readBytes(ByteBuffer in) {
+        byte[] a = new byte[length(in, 1)];
+        in.get(a);
+        return a;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeBytes(out, utf8, utf8.length);
+    }
+
+    static String readString(ByteBuffer in) {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+}
@@ -4,70 +4,165 @@
  *  Description:
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.Bag;
-import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.ST;
-import edu.princeton.cs.algs4.Topological;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 
 public class WordNet {
-    private ST<String, Bag<Integer>> nounSet;
-    private ST<Integer, String> synsetsTable;
+    private NounTable nounSet;
+    private String[] synsetsTable;
     // private Digraph wordNetGraph;
+    private CompactDigraph graph;
     private SAP sap;
+    private volatile SAPCache cache;
+    private AncestorIndex index;
+
+    // default number of noun pairs remembered by distance() and sap()
+    private static final int CACHE_SIZE = 1 << 16;
 
     // constructor takes the name of the two input files
     public WordNet(String synsets, String hypernyms) {
-        // Defines a symbol table of Strings and Bag<Integer>,
-        // adds the int at start of each line to the bag of
-        // each String on that line.
+        this(synsets, hypernyms, false);
+    }
+
+    // If indexAncestors, also stores every synset's ancestors with their
+    // distances, so distance() and sap() intersect two short lists
+    // instead of searching the graph; the result cache is then unused.
+    public WordNet(String synsets, String hypernyms, boolean indexAncestors) {
+        // Defines a table from each noun to the ids of the
+        // synsets (lines) it appears in.
         if (synsets == null || hypernyms == null) throw new IllegalArgumentException();
-        int numSynsets = 0;
-        nounSet = new ST<String, Bag<Integer>>();
-        synsetsTable = new ST<Integer, String>();
-        In in = new In(synsets);
-        while (!in.isEmpty()) {
-            String[] line = in.readLine().split(",");
-            synsetsTable.put(numSynsets, line[1]);
-            line = line[1].split(" ");
-            for (String noun : line) {
-                Bag<Integer> idBag = nounSet.get(noun);
-                if (idBag != null) idBag.add(numSynsets);
-                else {
-                    idBag = new Bag<Integer>();
-                    idBag.add(numSynsets);
-                    nounSet.put(noun, idBag);
-                }
-            }
-            numSynsets++;
+        WordNetParser parser = new WordNetParser();
+        parser.readSynsets(synsets);
+        int numSynsets = parser.numSynsets();
+        synsetsTable = parser.synsets();
+        nounSet = new NounTable(parser.numNouns());
+        for (int i = 0; i < parser.numNouns(); i++) {
+            nounSet.put(parser.noun(i), parser.synsetIds(i));
         }
 
         // Reads input lines one by one, making edges
         // from first entry in line to each of the others.
-        in = new In(hypernyms);
-        Digraph wordNetGraph = new Digraph(numSynsets);
-        while (!in.isEmpty()) {
-            String[] line = in.readLine().split(",");
-            int vertex = Integer.parseInt(line[0]);
-            for (int i = 1; i < line.length; i++) {
-                wordNetGraph.addEdge(vertex, Integer.parseInt(line[i]));
-            }
-        }
+        graph = parser.readHypernyms(hypernyms);
 
-        // Checks if wordNetGraph is a rooted DAG.
-        Topological sortedG = new Topological(wordNetGraph);
-        if (!sortedG.hasOrder()) throw new IllegalArgumentException();
+        // Checks if graph is a rooted DAG.
+        int[] order = graph.topologicalOrder();
+        if (order == null) throw new IllegalArgumentException();
         int numRoots = 0;
         for (int i = 0; i < numSynsets; i++) {
-            if (wordNetGraph.outdegree(i) == 0) numRoots++;
+            if (graph.outdegree(i) == 0) numRoots++;
             if (numRoots > 1) throw new IllegalArgumentException();
         }
-        sap = new SAP(wordNetGraph);
+        sap = new SAP(graph, true);
+        cache = new SAPCache(sap, CACHE_SIZE, true);
+        if (indexAncestors) index = new AncestorIndex(graph, order);
+    }
+
+    // used by load()
+    private WordNet() { }
+
+    // Writes this WordNet, with its ancestor index if it has one, to a
+    // snapshot file that load() can read back without parsing the input
+    // files or checking the graph again.
+    public void save(String filename) {
+        if (filename == null) throw new IllegalArgumentException();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(Snapshot.MAGIC);
+            out.writeInt(Snapshot.VERSION);
+            out.writeInt(synsetsTable.length);
+            for (String synset : synsetsTable) Snapshot.writeString(out, synset);
+            out.writeInt(nounSet.size());
+            for (String noun : nounSet.sortedKeys()) {
+                Snapshot.writeString(out, noun);
+                int[] ids = nounSet.get(noun);
+                Snapshot.writeInts(out, ids, ids.length);
+            }
+            graph.write(out);
+            out.writeBoolean(index != null);
+            if (index != null) index.write(out);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + filename, e);
+        }
+    }
+
+    // Reads a WordNet written by save(), mapping the file into memory.
+    // Throws IllegalArgumentException if the file is not a snapshot or was
+    // written by a version of this code with a different layout.
+    public static WordNet load(String filename) {
+        if (filename == null) throw new IllegalArgumentException();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 8 || in.getInt() != Snapshot.MAGIC) {
+                throw new IllegalArgumentException(filename + " is not a WordNet snapshot");
+            }
+            if (in.getInt() != Snapshot.VERSION) {
+                throw new IllegalArgumentException(filename + " is a stale snapshot");
+            }
+            WordNet net = new WordNet();
+            // every synset and noun takes at least one 4-byte count
+            int numSynsets = in.getInt();
+            if (numSynsets < 0 || numSynsets > in.remaining() / 4) {
+                throw new IllegalArgumentException("corrupt snapshot");
+            }
+            net.synsetsTable = new String[numSynsets];
+            for (int i = 0; i < numSynsets; i++) net.synsetsTable[i] = Snapshot.readString(in);
+            int numNouns = in.getInt();
+            if (numNouns < 0 || numNouns > in.remaining() / 4) {
+                throw new IllegalArgumentException("corrupt snapshot");
+            }
+            net.nounSet = new NounTable(numNouns);
+            for (int i = 0; i < numNouns; i++) {
+                String noun = Snapshot.readString(in);
+                int[] ids = Snapshot.readInts(in);
+                for (int id : ids) {
+                    if (id < 0 || id >= numSynsets) throw new IllegalArgumentException("corrupt snapshot");
+                }
+                net.nounSet.put(noun, ids);
+            }
+            net.graph = CompactDigraph.read(in);
+            if (net.graph.V() != numSynsets) throw new IllegalArgumentException("corrupt snapshot");
+            if (in.get() != 0) net.index = AncestorIndex.read(in, numSynsets);
+            net.sap = new SAP(net.graph, true);
+            net.cache = new SAPCache(net.sap, CACHE_SIZE, true);
+            return net;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not read " + filename, e);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(filename + " is truncated", e);
+        }
+    }
+
+    // Replaces the distance()/sap() result cache with one holding up to
+    // capacity noun pairs, evicting least recently used pairs if lru and
+    // the oldest otherwise. A capacity of 0 turns caching off.
+    public void configureCache(int capacity, boolean lru) {
+        cache = new SAPCache(sap, capacity, lru);
+    }
+
+    // number of distance()/sap() calls answered from the cache
+    public long cacheHits() {
+        return cache.hits();
+    }
+
+    // number of distance()/sap() calls that had to search
+    public long cacheMisses() {
+        return cache.misses();
     }
 
     // returns all WordNet nouns
     public Iterable<String> nouns() {
-        return this.nounSet.keys();
+        return this.nounSet.sortedKeys();
     }
 
     // is the word a WordNet noun?
@@ -79,35 +174,132 @@ public class WordNet {
     // distance between nounA and nounB
     public int distance(String nounA, String nounB) {
         if (nounA == null || nounB == null) throw new IllegalArgumentException();
-        if (!isNoun(nounA) || !isNoun(nounB)) throw new IllegalArgumentException();
+        int[] a = nounSet.get(nounA);
+        int[] b = nounSet.get(nounB);
+        if (a == null || b == null) throw new IllegalArgumentException();
         if (nounA.equals(nounB)) return 0;
-        Bag<Integer> a = nounSet.get(nounA);
-        Bag<Integer> b = nounSet.get(nounB);
-        return sap.length(a, b);
+        if (index != null) return index.lengthAndAncestor(a, b)[0];
+        return cache.length(a, b);
     }
 
     // a synset (second field of synsets.txt) that is the common ancestor of nounA and nounB
     // in a shortest ancestral path (defined below)
     public String sap(String nounA, String nounB) {
         if (nounA == null || nounB == null) throw new IllegalArgumentException();
-        if (!isNoun(nounA) || !isNoun(nounB)) throw new IllegalArgumentException();
-        Bag<Integer> a = nounSet.get(nounA);
-        Bag<Integer> b = nounSet.get(nounB);
-        int ancestor = sap.ancestor(a, b);
-        return this.synsetsTable.get(ancestor);
+        int[] a = nounSet.get(nounA);
+        int[] b = nounSet.get(nounB);
+        if (a == null || b == null) throw new IllegalArgumentException();
+        int ancestor;
+        if (index != null) ancestor = index.lengthAndAncestor(a, b)[1];
+        else ancestor = cache.ancestor(a, b);
+        return this.synsetsTable[ancestor];
+    }
+
+    // ancestors of noun's synsets as { synsets, distances }, with the
+    // synsets in increasing order; see distance(int[][], int[][])
+    int[][] ancestors(String noun) {
+        if (noun == null) throw new IllegalArgumentException();
+        int[] synsets = nounSet.get(noun);
+        if (synsets == null) throw new IllegalArgumentException();
+        if (index != null) return index.ancestors(synsets);
+        return sap.ancestors(synsets);
+    }
+
+    // distance between noun and each noun in targets, in order, searching
+    // from noun only once; each distance is computed as it is iterated
+    public Iterable<Integer> distances(String noun, final Iterable<String> targets) {
+        final Searcher from = searcher(noun, targets);
+        return new Iterable<Integer>() {
+            public Iterator<Integer> iterator() {
+                final Iterator<String> it = targets.iterator();
+                return new Iterator<Integer>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public Integer next() {
+                        return from.distance(it.next());
+                    }
+                };
+            }
+        };
+    }
+
+    // sap(noun, target) for each noun in targets, in order, searching
+    // from noun only once; each synset is found as it is iterated
+    public Iterable<String> saps(String noun, final Iterable<String> targets) {
+        final Searcher from = searcher(noun, targets);
+        return new Iterable<String>() {
+            public Iterator<String> iterator() {
+                final Iterator<String> it = targets.iterator();
+                return new Iterator<String>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public String next() {
+                        return synsetsTable[from.ancestor(it.next())];
+                    }
+                };
+            }
+        };
+    }
+
+    private Searcher searcher(String noun, Iterable<String> targets) {
+        if (noun == null || targets == null) throw new IllegalArgumentException();
+        if (!isNoun(noun)) throw new IllegalArgumentException();
+        return new Searcher(noun);
+    }
+
+    // Distances from one noun, with its side of the search done once:
+    // either its ancestor list from the index or a SAP.Source.
+    private class Searcher {
+        private final int[][] ancestors;
+        private final SAP.Source source;
+
+        Searcher(String noun) {
+            if (index != null) {
+                ancestors = index.ancestors(nounSet.get(noun));
+                source = null;
+            }
+            else {
+                ancestors = null;
+                source = sap.source(nounSet.get(noun));
+            }
+        }
+
+        int distance(String target) {
+            if (target == null || !isNoun(target)) throw new IllegalArgumentException();
+            if (source != null) return source.length(nounSet.get(target));
+            return AncestorIndex.intersect(ancestors, index.ancestors(nounSet.get(target)))[0];
+        }
+
+        int ancestor(String target) {
+            if (target == null || !isNoun(target)) throw new IllegalArgumentException();
+            if (source != null) return source.ancestor(nounSet.get(target));
+            return AncestorIndex.intersect(ancestors, index.ancestors(nounSet.get(target)))[1];
+        }
+    }
+
+    // Distance between two nouns given their ancestors(), so that callers
+    // comparing one noun against many search from each noun only once.
+    static int distance(int[][] a, int[][] b) {
+        return AncestorIndex.intersect(a, b)[0];
     }
 
     public static void main(String[] args) {
-        WordNet net = new WordNet(args[0], args[1]);
+        WordNet net = new WordNet(args[0], args[1], true);
+        System.out.println("ancestor index: " + net.index.buildMillis() + " ms, "
+                                   + net.index.memoryUsage() + " bytes");
         System.out.println("nounSet: ");
-        for (String s : net.nounSet.keys()) {
+        for (String s : net.nounSet.sortedKeys()) {
             System.out.print(s + ": ");
             for (int n : net.nounSet.get(s)) System.out.print(n + " ");
             System.out.println();
         }
         System.out.println("synsetsTable: ");
-        for (int s : net.synsetsTable.keys()) {
-            System.out.println(s + ": " + net.synsetsTable.get(s));
+        for (int s = 0; s < net.synsetsTable.length; s++) {
+            System.out.println(s + ": " + net.synsetsTable[s]);
         }
     }
 }
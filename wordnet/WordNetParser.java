@@ -0,0 +1,261 @@
+/* *****************************************************************************
+ *  Name:
+ *  Date:
+ *  Description: Reads synsets and hypernyms files byte by byte.
+ **************************************************************************** */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Tokenizes the input files in place in a reused byte buffer instead of
+// splitting each line into Strings. Each distinct noun becomes a String
+// once, when first seen; later occurrences are matched on their bytes.
+class WordNetParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Filled by readSynsets().
+    private String[] synsets = new String[1024];
+    private int numSynsets;
+
+    // Distinct nouns in order of first appearance, with their synset ids
+    // in increasing order, and an open addressing table on noun bytes.
+    private String[] nouns = new String[1024];
+    private byte[][] nounBytes = new byte[1024][];
+    private int[][] nounIds = new int[1024][];
+    private int[] nounIdCount = new int[1024];
+    private int numNouns;
+    private int[] table = new int[2048];    // noun index + 1, 0 if empty
+
+    // Line buffer: the current line is buf[lineStart..lineEnd) and the
+    // next one starts at buf[next].
+    private ReadableByteChannel channel;
+    private ByteBuffer chunk;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int bufEnd;
+    private int lineStart;
+    private int lineEnd;
+    private int next;
+    private boolean eof;
+
+    // Reads synsets.txt: id,noun noun ...,gloss on each line. Synsets are
+    // numbered in the order of their lines, as WordNet always did.
+    void readSynsets(String filename) {
+        open(filename);
+        try {
+            while (nextLine()) {
+                int p = indexOf(',', lineStart, lineEnd);
+                int q = indexOf(',', p + 1, lineEnd);
+                if (p == lineEnd) throw new IllegalArgumentException("bad synset line " + numSynsets);
+                if (numSynsets == synsets.length) synsets = Arrays.copyOf(synsets, 2 * numSynsets);
+                synsets[numSynsets] = new String(buf, p + 1, q - p - 1, StandardCharsets.UTF_8);
+                for (int i = p + 1; i < q; ) {
+                    int j = indexOf(' ', i, q);
+                    if (j > i) addNoun(i, j - i, numSynsets);
+                    i = j + 1;
+                }
+                numSynsets++;
+            }
+        }
+        finally {
+            close();
+        }
+    }
+
+    // Reads hypernyms.txt: id,hypernym,hypernym... on each line.
+    CompactDigraph readHypernyms(String filename) {
+        CompactDigraph.EdgeList edges = new CompactDigraph.EdgeList();
+        open(filename);
+        try {
+            while (nextLine()) {
+                // trailing empty fields are ignored, as split(",") does
+                int end = lineEnd;
+                while (end > lineStart && buf[end - 1] == ',') end--;
+                int p = indexOf(',', lineStart, end);
+                int vertex = parseInt(lineStart, p);
+                while (p < end) {
+                    int q = indexOf(',', p + 1, end);
+                    edges.add(vertex, parseInt(p + 1, q));
+                    p = q;
+                }
+            }
+        }
+        finally {
+            close();
+        }
+        return new CompactDigraph(numSynsets, edges);
+    }
+
+    int numSynsets() {
+        return numSynsets;
+    }
+
+    // second field of each synset line, indexed by synset id
+    String[] synsets() {
+        return Arrays.copyOf(synsets, numSynsets);
+    }
+
+    int numNouns() {
+        return numNouns;
+    }
+
+    String noun(int i) {
+        return nouns[i];
+    }
+
+    // ids of the synsets noun(i) belongs to, in increasing order
+    int[] synsetIds(int i) {
+        return Arrays.copyOf(nounIds[i], nounIdCount[i]);
+    }
+
+    private void addNoun(int off, int len, int id) {
+        int h = 0;
+        for (int i = off; i < off + len; i++) h = 31 * h + buf[i];
+        int mask = table.length - 1;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (table[slot] != 0) {
+            int n = table[slot] - 1;
+            if (sameBytes(nounBytes[n], off, len)) {
+                if (nounIds[n][nounIdCount[n] - 1] == id) return;    // repeated in one synset
+                if (nounIdCount[n] == nounIds[n].length) {
+                    nounIds[n] = Arrays.copyOf(nounIds[n], 2 * nounIdCount[n]);
+                }
+                nounIds[n][nounIdCount[n]++] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (numNouns == nouns.length) {
+            nouns = Arrays.copyOf(nouns, 2 * numNouns);
+            nounBytes = Arrays.copyOf(nounBytes, 2 * numNouns);
+            nounIds = Arrays.copyOf(nounIds, 2 * numNouns);
+            nounIdCount = Arrays.copyOf(nounIdCount, 2 * numNouns);
+        }
+        nounBytes[numNouns] = Arrays.copyOfRange(buf, off, off + len);
+        nouns[numNouns] = new String(buf, off, len, StandardCharsets.UTF_8);
+        nounIds[numNouns] = new int[] { id };
+        nounIdCount[numNouns] = 1;
+        table[slot] = ++numNouns;
+        if (2 * numNouns > table.length) rehash();
+    }
+
+    private boolean sameBytes(byte[] a, int off, int len) {
+        if (a.length != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (a[i] != buf[off + i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[2 * table.length];
+        int mask = table.length - 1;
+        for (int n = 0; n < numNouns; n++) {
+            int h = 0;
+            for (byte b : nounBytes[n]) h = 31 * h + b;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = n + 1;
+        }
+    }
+
+    private int indexOf(char c, int from, int to) {
+        int i = from;
+        while (i < to && buf[i] != c) i++;
+        return i;
+    }
+
+    private int parseInt(int from, int to) {
+        if (from >= to) throw new IllegalArgumentException("missing synset id");
+        int x = 0;
+        for (int i = from; i < to; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) throw new IllegalArgumentException("bad synset id");
+            x = 10 * x + d;
+        }
+        return x;
+    }
+
+    private void open(String filename) {
+        if (filename == null) throw new IllegalArgumentException();
+        try {
+            channel = channel(filename);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + filename, e);
+        }
+        if (chunk == null) chunk = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        chunk.clear();
+        bufEnd = 0;
+        next = 0;
+        eof = false;
+    }
+
+    // Opens name the way In does: a local file if there is one, else a
+    // classpath resource, else a URL.
+    private static ReadableByteChannel channel(String name) throws IOException {
+        File file = new File(name);
+        if (file.exists()) return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        URL url = WordNetParser.class.getResource(name);
+        if (url == null) url = WordNetParser.class.getClassLoader().getResource(name);
+        if (url == null) url = new URL(name);
+        return Channels.newChannel(url.openStream());
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            // nothing was written, so there is nothing to lose
+        }
+        channel = null;
+    }
+
+    // Advances to the next non-blank line, without its line terminator.
+    private boolean nextLine() {
+        while (true) {
+            int nl = indexOf('\n', next, bufEnd);
+            while (nl == bufEnd && !eof) {
+                refill();
+                nl = indexOf('\n', next, bufEnd);
+            }
+            if (next >= bufEnd) return false;
+            lineStart = next;
+            lineEnd = nl;
+            next = nl + 1;
+            if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') lineEnd--;
+            if (lineEnd > lineStart) return true;
+        }
+    }
+
+    // Moves the unread part of buf to its front and reads more after it.
+    private void refill() {
+        int keep = bufEnd - next;
+        System.arraycopy(buf, next, buf, 0, keep);
+        bufEnd = keep;
+        next = 0;
+        if (bufEnd == buf.length) buf = Arrays.copyOf(buf, 2 * buf.length);
+        try {
+            chunk.clear();
+            chunk.limit(Math.min(chunk.capacity(), buf.length - bufEnd));
+            int n = channel.read(chunk);
+            if (n < 0) eof = true;
+            else {
+                chunk.flip();
+                chunk.get(buf, bufEnd, n);
+                bufEnd += n;
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not read input", e);
+        }
+    }
+}